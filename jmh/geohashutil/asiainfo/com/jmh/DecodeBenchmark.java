@@ -0,0 +1,69 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.GeoHash;
+import geohashutil.asiainfo.com.GeoHashCodec;
+import geohashutil.asiainfo.com.test.GeoHashSlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static geohashutil.asiainfo.com.jmh.Inputs.PRECISION;
+import static geohashutil.asiainfo.com.jmh.Inputs.SIZE;
+
+/**
+ * hash bits and base32 strings back to hashes, {@link GeoHash#fromLongValue} against its GeoHashSlow baseline
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class DecodeBenchmark {
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void fromLongValue(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHash.fromLongValue(in.bits[i], (byte) PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void slowFromLongValue(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashSlow.fromLongValue(in.bits[i], (byte) PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void codecDeinterleave(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashCodec.deinterleave(in.bits[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void fromGeohashString(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHash.fromGeohashString(in.strings[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void toBase32(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(in.hashes[i].toBase32());
+        }
+    }
+}
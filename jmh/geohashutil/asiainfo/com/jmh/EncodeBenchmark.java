@@ -0,0 +1,89 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.GeoHash;
+import geohashutil.asiainfo.com.GeoHashCodec;
+import geohashutil.asiainfo.com.test.GeoHashSlow;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static geohashutil.asiainfo.com.jmh.Inputs.PRECISION;
+import static geohashutil.asiainfo.com.jmh.Inputs.SIZE;
+
+/**
+ * lat/lon to hash: {@link GeoHash#withBitPrecision} against its GeoHashSlow v1-v4 baselines and the codec
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Thread)
+public class EncodeBenchmark {
+    private final long[] bulkOut = new long[SIZE];
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void withBitPrecision(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHash.withBitPrecision(in.lats[i], in.lngs[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void slowV1(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashSlow.v1(in.lats[i], in.lngs[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void slowV2(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashSlow.v2(in.lats[i], in.lngs[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void slowV3(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashSlow.v3(in.lats[i], in.lngs[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void slowV4(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashSlow.v4(in.lats[i], in.lngs[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void codecEncode(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(GeoHashCodec.encode(in.lats[i], in.lngs[i], PRECISION));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public long[] codecEncodeColumns(Inputs in) {
+        GeoHashCodec.encode(in.lats, in.lngs, PRECISION, bulkOut);
+        return bulkOut;
+    }
+}
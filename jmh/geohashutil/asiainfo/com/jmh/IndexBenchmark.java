@@ -0,0 +1,84 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.GeoHashPointIndex;
+import geohashutil.asiainfo.com.GeoHashTrie;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static geohashutil.asiainfo.com.jmh.Inputs.SIZE;
+
+/**
+ * queries of the point index and the trie built from the input points
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+@State(Scope.Benchmark)
+public class IndexBenchmark {
+    private GeoHashPointIndex index;
+    private GeoHashTrie trie;
+
+    @Setup
+    public void setup(Inputs in) {
+        index = new GeoHashPointIndex(in.lats, in.lngs, new int[SIZE]);
+        final long[] keys = new long[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            keys[i] = index.getBits(i);
+        }
+        trie = new GeoHashTrie(keys, null, 64);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void pointIndexQueryBox(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(index.queryBox(in.boxes[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void pointIndexQueryRadius(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(index.queryRadius(in.points[i], 20000));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void pointIndexNearest(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(index.nearest(in.points[i], 8));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void trieCount(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(trie.count(in.hashes[i]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void trieCountBox(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(trie.count(in.boxes[i], 30));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.BoundingBox;
+import geohashutil.asiainfo.com.GeoHash;
+import geohashutil.asiainfo.com.WGS84Point;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+
+/**
+ * the inputs shared by all benchmarks, generated from a fixed seed so every run sees the same points.<br>
+ * an invocation of a benchmark walks all SIZE inputs, see {@link org.openjdk.jmh.annotations.OperationsPerInvocation}
+ */
+@State(Scope.Benchmark)
+public class Inputs {
+    public static final int SIZE = 1 << 10;
+    public static final int PRECISION = 40;
+    private static final long SEED = 20200101L;
+
+    public final double[] lats = new double[SIZE];
+    public final double[] lngs = new double[SIZE];
+    public final long[] bits = new long[SIZE];
+    public final GeoHash[] hashes = new GeoHash[SIZE];
+    public final String[] strings = new String[SIZE];
+    /**
+     * boxes of 0.02 to 1 degree, away from the poles and the antimeridian
+     */
+    public final BoundingBox[] boxes = new BoundingBox[SIZE];
+    public final WGS84Point[] points = new WGS84Point[SIZE];
+
+    @Setup
+    public void setup() {
+        Random r = new Random(SEED);
+        for (int i = 0; i < SIZE; i++) {
+            lats[i] = r.nextDouble() * 180 - 90;
+            lngs[i] = r.nextDouble() * 360 - 180;
+            hashes[i] = GeoHash.withBitPrecision(lats[i], lngs[i], PRECISION);
+            bits[i] = hashes[i].bits;
+            strings[i] = GeoHash.geoHashStringWithCharacterPrecision(lats[i], lngs[i], 8);
+            double width = r.nextDouble() * 0.5 + 0.01;
+            double height = width * (r.nextDouble() * 0.6 + 0.7);
+            double lat = Math.max(-80, Math.min(80, lats[i]));
+            double lng = Math.max(-170, Math.min(170, lngs[i]));
+            boxes[i] = new BoundingBox(lat - height, lat + height, lng - width, lng + width);
+            points[i] = WGS84Point.Create(lat, lng);
+        }
+    }
+}
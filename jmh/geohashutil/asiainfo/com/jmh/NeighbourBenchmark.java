@@ -0,0 +1,98 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.GeoHash;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static geohashutil.asiainfo.com.jmh.Inputs.SIZE;
+
+/**
+ * the eight neighbours of a hash and the whole 3x3 neighbourhood
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class NeighbourBenchmark {
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getNorthernNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getNorthernNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getSouthernNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getSouthernNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getEasternNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getEasternNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getWesternNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getWesternNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getNorthernEastNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getNorthernEastNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getNorthernWestNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getNorthernWestNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getSouthernEastNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getSouthernEastNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getSouthernWestNeighbour(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getSouthernWestNeighbour());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void getAdjacent(Inputs in, Blackhole bh) {
+        for (GeoHash hash : in.hashes) {
+            bh.consume(hash.getAdjacent());
+        }
+    }
+}
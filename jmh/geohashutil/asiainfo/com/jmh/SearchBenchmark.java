@@ -0,0 +1,45 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.BoundingBox;
+import geohashutil.asiainfo.com.GeoHashSearchUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static geohashutil.asiainfo.com.jmh.Inputs.SIZE;
+
+/**
+ * covers of the query boxes
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class SearchBenchmark {
+    private static final int MAX_LEN = 36;
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void leastBoundingSlice(Inputs in, Blackhole bh) {
+        for (BoundingBox box : in.boxes) {
+            bh.consume(GeoHashSearchUtil.leastBoundingSlice(box, MAX_LEN));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void leastBoundingSliceMerged(Inputs in, Blackhole bh) {
+        for (BoundingBox box : in.boxes) {
+            bh.consume(GeoHashSearchUtil.leastBoundingSliceMerged(box, MAX_LEN));
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.BoundingBox;
+import geohashutil.asiainfo.com.BoundingBoxNavIterator;
+import geohashutil.asiainfo.com.GeoHash;
+import geohashutil.asiainfo.com.GeoHashSearchUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * a national scale box (about 60 x 36 degrees) sliced into about 2 million grids of 26 bits,
+ * by the fork/join walk with pools of 1, 2 and 4 threads against the walk of a single iterator
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class SliceParallelBenchmark {
+    private static final BoundingBox BOX = new BoundingBox(18, 54, 73, 135);
+    private static final int PRECISION = 26;
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+        @Param({"1", "2", "4"})
+        public int parallelism;
+
+        ForkJoinPool pool;
+
+        @Setup
+        public void setup() {
+            pool = new ForkJoinPool(parallelism);
+        }
+
+        @TearDown
+        public void tearDown() {
+            pool.shutdown();
+        }
+    }
+
+    @Benchmark
+    public List<GeoHash> sliceParallel(Pool pool) {
+        return GeoHashSearchUtil.sliceParallel(BOX, PRECISION, pool.pool);
+    }
+
+    @Benchmark
+    public List<GeoHash> navigate() {
+        final List<GeoHash> slices = new ArrayList<>();
+        final BoundingBoxNavIterator it = BOX.navigate(PRECISION);
+        while (it.hasNext()) {
+            slices.add(it.next());
+        }
+        return slices;
+    }
+}
@@ -0,0 +1,39 @@
+package geohashutil.asiainfo.com.jmh;
+
+import geohashutil.asiainfo.com.VincentyGeodesy;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+import static geohashutil.asiainfo.com.jmh.Inputs.SIZE;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = {"-Xms1g", "-Xmx1g"})
+public class VincentyBenchmark {
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void distanceInMeters(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(VincentyGeodesy.distanceInMeters(in.points[i], in.points[(i + 1) & (SIZE - 1)]));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SIZE)
+    public void moveInDirection(Inputs in, Blackhole bh) {
+        for (int i = 0; i < SIZE; i++) {
+            bh.consume(VincentyGeodesy.moveInDirection(in.points[i], i % 360, 1000));
+        }
+    }
+}
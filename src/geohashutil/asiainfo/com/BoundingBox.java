@@ -2,7 +2,7 @@ package geohashutil.asiainfo.com;
 
 import java.io.Serializable;
 
-public class BoundingBox implements Serializable {
+public class BoundingBox implements GeoShape, Serializable {
     /**
      * 纬度,y
      */
@@ -91,14 +91,30 @@ public class BoundingBox implements Serializable {
 //TODO end might need cached
 
     public boolean contains(WGS84Point point) {
-        return (point.latitude >= minLat) && (point.longitude >= minLon) && (point.latitude <= maxLat)
-                && (point.longitude <= maxLon);
+        return contains(point.latitude, point.longitude);
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return this;
+    }
+
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        return (latitude >= minLat) && (longitude >= minLon) && (latitude <= maxLat)
+                && (longitude <= maxLon);
+    }
+
+    @Override
+    public boolean contains(BoundingBox other) {
+        return other.minLat >= minLat && other.maxLat <= maxLat && other.minLon >= minLon && other.maxLon <= maxLon;
     }
 
     public boolean intersects(MutableBoundingBox other) {
         return !(other.getMinLon() > maxLon || other.getMaxLon() < minLon || other.getMinLat() > maxLat || other.getMaxLat() < minLat);
     }
 
+    @Override
     public boolean intersects(BoundingBox other) {
         return !(other.minLon > maxLon || other.maxLon < minLon || other.minLat > maxLat || other.maxLat < minLat);
     }
@@ -119,8 +135,18 @@ public class BoundingBox implements Serializable {
         return new BoundingBox(minLat, maxLat, minLon, maxLon);
     }
 
+    /**
+     * walk the grids of {@link GeoHashSearchUtil#leastBoundingSlice(BoundingBox, int)} with the default max level
+     */
     public BoundingBoxNavIterator navigate() {
-        throw new RuntimeException("not implemented");
+        return navigate(GeoHashSearchUtil.slicePrecision(this, GeoHashSearchUtil.MAX_LEVEL));
+    }
+
+    /**
+     * walk the grids of the given precision intersecting this box in Z-order
+     */
+    public BoundingBoxNavIterator navigate(int precision) {
+        return new BoundingBoxNavIterator(this, precision);
     }
 
     @Override
@@ -1,21 +1,234 @@
 package geohashutil.asiainfo.com;
 
+import java.util.Comparator;
 import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
 
-public class BoundingBoxNavIterator implements Iterator<GeoHash>{
+/**
+ * walks the grids of a box at one precision lazily in Z-order (geohash order),
+ * the grids of {@link GeoHashSearchUtil#leastBoundingSlice(BoundingBox, int)} at that precision without a list of them.<br>
+ * the state is the rectangle and the current ord, BIGMIN jumps over the gaps between the rows of the box.
+ * {@link #nextBits()} returns the grids as primitive bits, {@link #spliterator()} splits the walk for streams.
+ */
+public class BoundingBoxNavIterator implements Iterator<GeoHash> {
+    private final int precision;
+    private final long minLat, maxLat, minLon, maxLon;
+    private final long zMin, zMax;
+    /**
+     * the last ord of this walk, the walks from splitting share the rectangle but not their ords
+     */
+    private long zEnd;
+    private long z;
+    private boolean done;
+
+    /**
+     * @param precision in [0,62]
+     */
+    public BoundingBoxNavIterator(BoundingBox box, int precision) {
+        if (precision < 0 || precision > 62) {
+            throw new IllegalArgumentException("precision must be in [0,62]");
+        }
+        this.precision = precision;
+        //the corners of the slices, so the walk and leastBoundingSlice agree on the edges of the grids
+        final long lbg = GeoHashSearchUtil.lowerLeftBits(box, precision);
+        final long rtg = GeoHashSearchUtil.upperRightBits(box, precision);
+        minLat = GeoHashCodec.decodeLatBits(lbg, precision);
+        maxLat = GeoHashCodec.decodeLatBits(rtg, precision);
+        minLon = GeoHashCodec.decodeLonBits(lbg, precision);
+        maxLon = GeoHashCodec.decodeLonBits(rtg, precision);
+        zMin = precision == 0 ? 0 : lbg >>> (64 - precision);
+        zMax = precision == 0 ? 0 : rtg >>> (64 - precision);
+        zEnd = zMax;
+        z = zMin;
+    }
+
+    /**
+     * the part [from, to] of the walk of that, from must be inside the rectangle
+     */
+    private BoundingBoxNavIterator(BoundingBoxNavIterator that, long from, long to) {
+        precision = that.precision;
+        minLat = that.minLat;
+        maxLat = that.maxLat;
+        minLon = that.minLon;
+        maxLon = that.maxLon;
+        zMin = that.zMin;
+        zMax = that.zMax;
+        zEnd = to;
+        z = from;
+    }
+
+    public int getPrecision() {
+        return precision;
+    }
 
     @Override
     public boolean hasNext() {
-        return false;
+        return !done;
     }
 
     @Override
     public GeoHash next() {
-        return null;
+        final long ord = nextOrd();
+        return GeoHash.fromOrd(ord, (byte) precision);
+    }
+
+    /**
+     * @return the bits of the next grid, significant bits are {@link #getPrecision()}
+     */
+    public long nextBits() {
+        final long ord = nextOrd();
+        return precision == 0 ? 0 : ord << (64 - precision);
+    }
+
+    private long nextOrd() {
+        if (done)
+            throw new NoSuchElementException();
+        final long ord = z;
+        if (ord == zEnd) {
+            done = true;
+        } else {
+            z = ord + 1;
+            if (!GeoHashSearchUtil.ordInRect(z, precision, minLat, maxLat, minLon, maxLon)) {
+                z = GeoHashSearchUtil.bigMin(z, zMin, zMax, precision);
+                done = z > zEnd;
+            }
+        }
+        return ord;
+    }
+
+    /**
+     * split the remaining walk at the largest aligned block boundary in it,
+     * so both parts are whole geohash prefixes as far as possible.
+     * @return the walk up to the boundary, this one goes on after it; null if it is too small to split
+     */
+    public BoundingBoxNavIterator trySplit() {
+        if (done || z == zEnd)
+            return null;
+        final long mid = zEnd & (-1L << (63 - Long.numberOfLeadingZeros(z ^ zEnd)));
+        long from = mid;
+        if (!GeoHashSearchUtil.ordInRect(from, precision, minLat, maxLat, minLon, maxLon)) {
+            from = GeoHashSearchUtil.bigMin(from, zMin, zMax, precision);
+            if (from > zEnd) {
+                //nothing of the rectangle after mid
+                zEnd = mid - 1;
+                return null;
+            }
+        }
+        final BoundingBoxNavIterator lower = new BoundingBoxNavIterator(this, z, mid - 1);
+        z = from;
+        return lower;
+    }
+
+    /**
+     * @return at most the number of grids left, exact while the rest of the walk is all inside the rectangle
+     */
+    long estimateSize() {
+        return done ? 0 : zEnd - z + 1;
     }
 
     @Override
     public void remove() {
         throw new UnsupportedOperationException();
     }
+
+    public Spliterator<GeoHash> spliterator() {
+        return new CellSpliterator(this);
+    }
+
+    /**
+     * @return spliterator of {@link #nextBits()}
+     */
+    public Spliterator.OfLong bitsSpliterator() {
+        return new BitsSpliterator(this);
+    }
+
+    private static final int CHARACTERISTICS = Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.SORTED
+            | Spliterator.NONNULL | Spliterator.IMMUTABLE;
+
+    private static final class CellSpliterator implements Spliterator<GeoHash> {
+        private final BoundingBoxNavIterator it;
+
+        CellSpliterator(BoundingBoxNavIterator it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super GeoHash> action) {
+            if (!it.hasNext())
+                return false;
+            action.accept(it.next());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(Consumer<? super GeoHash> action) {
+            while (it.hasNext()) {
+                action.accept(it.next());
+            }
+        }
+
+        @Override
+        public Spliterator<GeoHash> trySplit() {
+            final BoundingBoxNavIterator lower = it.trySplit();
+            return lower == null ? null : new CellSpliterator(lower);
+        }
+
+        @Override
+        public long estimateSize() {
+            return it.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            return CHARACTERISTICS;
+        }
+
+        @Override
+        public Comparator<? super GeoHash> getComparator() {
+            return null;
+        }
+    }
+
+    private static final class BitsSpliterator implements Spliterator.OfLong {
+        private final BoundingBoxNavIterator it;
+
+        BitsSpliterator(BoundingBoxNavIterator it) {
+            this.it = it;
+        }
+
+        @Override
+        public boolean tryAdvance(LongConsumer action) {
+            if (!it.hasNext())
+                return false;
+            action.accept(it.nextBits());
+            return true;
+        }
+
+        @Override
+        public void forEachRemaining(LongConsumer action) {
+            while (it.hasNext()) {
+                action.accept(it.nextBits());
+            }
+        }
+
+        @Override
+        public Spliterator.OfLong trySplit() {
+            final BoundingBoxNavIterator lower = it.trySplit();
+            return lower == null ? null : new BitsSpliterator(lower);
+        }
+
+        @Override
+        public long estimateSize() {
+            return it.estimateSize();
+        }
+
+        @Override
+        public int characteristics() {
+            //the bits sort as unsigned longs, not in the natural order of long
+            return CHARACTERISTICS & ~Spliterator.SORTED;
+        }
+    }
 }
@@ -0,0 +1,54 @@
+package geohashutil.asiainfo.com;
+
+import java.util.List;
+
+/**
+ * the slices of a box at one precision, see {@link GeoHashSearchUtil#leastBoundingSlice(BoundingBox, int, int)}.<br>
+ * areas are in square degrees of the lat/lon plane, only their ratios are meant to be compared.
+ */
+public class BoundingSlice {
+    /**
+     * in the order of {@link GeoHashSearchUtil#leastBoundingSlice(BoundingBox, int)}
+     */
+    public final List<GeoHash> slices;
+    public final int precision;
+    /**
+     * 经度,x: grids along longitude
+     */
+    public final int lonCount;
+    /**
+     * 纬度,y: grids along latitude
+     */
+    public final int latCount;
+    public final double boxArea;
+    public final double coverArea;
+
+    public BoundingSlice(List<GeoHash> slices, int precision, int lonCount, int latCount, double boxArea, double coverArea) {
+        this.slices = slices;
+        this.precision = precision;
+        this.lonCount = lonCount;
+        this.latCount = latCount;
+        this.boxArea = boxArea;
+        this.coverArea = coverArea;
+    }
+
+    /**
+     * @return area of the slices outside the box, scanned for nothing
+     */
+    public double getFalsePositiveArea() {
+        return Math.max(0, coverArea - boxArea);
+    }
+
+    /**
+     * @return share of the scanned area outside the box, in [0,1)
+     */
+    public double getFalsePositiveRatio() {
+        return coverArea == 0 ? 0 : getFalsePositiveArea() / coverArea;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d slices (%d x %d) of %d bits, false positive %.1f%%",
+                slices.size(), lonCount, latCount, precision, getFalsePositiveRatio() * 100);
+    }
+}
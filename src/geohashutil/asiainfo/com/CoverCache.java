@@ -0,0 +1,177 @@
+package geohashutil.asiainfo.com;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * memoizes {@link GeoHashSearchUtil#leastBoundingSliceMerged(BoundingBox, int)} for repeated query boxes.<br>
+ * the cover only depends on the grids of the box's lower left and upper right corners at the slice precision,
+ * so a box is quantized to them: boxes with the same corner grids share one entry.
+ * covers are stored as bits and precisions, the least recently used ones are evicted when there are more than
+ * maxEntries covers or more than maxWeight cells in all. all methods are thread safe.
+ */
+public final class CoverCache {
+    private static final class Key {
+        final int precision;
+        final long lbg, rtg;
+
+        Key(int precision, long lbg, long rtg) {
+            this.precision = precision;
+            this.lbg = lbg;
+            this.rtg = rtg;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key))
+                return false;
+            Key other = (Key) obj;
+            return precision == other.precision && lbg == other.lbg && rtg == other.rtg;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * (31 * precision + Long.hashCode(lbg)) + Long.hashCode(rtg);
+        }
+    }
+
+    /**
+     * a cover of cells of mixed precision in Z-order
+     */
+    public static final class Cover {
+        private final long[] bits;
+        private final byte[] precisions;
+
+        Cover(long[] bits, byte[] precisions) {
+            this.bits = bits;
+            this.precisions = precisions;
+        }
+
+        public int size() {
+            return bits.length;
+        }
+
+        public long getBits(int index) {
+            return bits[index];
+        }
+
+        public byte getPrecision(int index) {
+            return precisions[index];
+        }
+
+        public GeoHash get(int index) {
+            return GeoHash.fromLongValue(bits[index], precisions[index]);
+        }
+
+        public List<GeoHash> toGeoHashes() {
+            List<GeoHash> r = new ArrayList<>(bits.length);
+            for (int i = 0; i < bits.length; i++) {
+                r.add(get(i));
+            }
+            return r;
+        }
+    }
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final LinkedHashMap<Key, Cover> covers = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * @param maxEntries at most so many covers are kept
+     * @param maxWeight  at most so many cells are kept in all covers, a larger cover is not cached
+     */
+    public CoverCache(int maxEntries, long maxWeight) {
+        if (maxEntries < 1 || maxWeight < 1) {
+            throw new IllegalArgumentException("maxEntries and maxWeight must be positive");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+    }
+
+    public List<GeoHash> leastBoundingSliceMerged(final BoundingBox box, final int maxLen) {
+        return get(box, maxLen).toGeoHashes();
+    }
+
+    public Cover get(final BoundingBox box, final int maxLen) {
+        final int k = GeoHashSearchUtil.slicePrecision(box, maxLen);
+        //the corners of the cover itself, box.minLat may be an ulp off them on the edge of a grid
+        final Key key = new Key(k, GeoHashSearchUtil.lowerLeftBits(box, k), GeoHashSearchUtil.upperRightBits(box, k));
+        Cover cover;
+        synchronized (covers) {
+            cover = covers.get(key);
+        }
+        if (cover != null) {
+            hitCount.incrementAndGet();
+            return cover;
+        }
+        missCount.incrementAndGet();
+        //computed outside the lock, a concurrent miss of the same key computes it again
+        cover = compute(key);
+        if (cover.size() <= maxWeight) {
+            synchronized (covers) {
+                final Cover old = covers.put(key, cover);
+                weight += cover.size() - (old == null ? 0 : old.size());
+                evict();
+            }
+        }
+        return cover;
+    }
+
+    private static Cover compute(Key key) {
+        final int grids = (int) GeoHashSearchUtil.gridCount(key.lbg, key.rtg, key.precision);
+        final long[] ords = new long[grids];
+        final byte[] lens = new byte[grids];
+        final int count = GeoHashSearchUtil.mergeRect(key.lbg, key.rtg, key.precision, ords, lens);
+        final long[] bits = new long[count];
+        for (int i = 0; i < count; i++) {
+            bits[i] = lens[i] == 0 ? 0 : ords[i] << (64 - lens[i]);
+        }
+        return new Cover(bits, Arrays.copyOf(lens, count));
+    }
+
+    private void evict() {
+        final Iterator<Map.Entry<Key, Cover>> it = covers.entrySet().iterator();
+        while ((covers.size() > maxEntries || weight > maxWeight) && it.hasNext()) {
+            weight -= it.next().getValue().size();
+            it.remove();
+        }
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    public int size() {
+        synchronized (covers) {
+            return covers.size();
+        }
+    }
+
+    /**
+     * @return number of cells of all cached covers
+     */
+    public long weight() {
+        synchronized (covers) {
+            return weight;
+        }
+    }
+
+    public void clear() {
+        synchronized (covers) {
+            covers.clear();
+            weight = 0;
+        }
+    }
+}
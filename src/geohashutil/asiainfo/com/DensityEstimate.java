@@ -0,0 +1,34 @@
+package geohashutil.asiainfo.com;
+
+/**
+ * expected number of points in a region, the data statistics of {@link QueryPlanner}
+ */
+public interface DensityEstimate {
+    /**
+     * @return expected number of points in the box
+     */
+    double estimate(BoundingBox box);
+
+    /**
+     * points spread evenly over the lat/lon plane
+     */
+    static DensityEstimate uniform(final double pointsPerSquareDegree) {
+        if (!(pointsPerSquareDegree >= 0)) {
+            throw new IllegalArgumentException("density must not be negative");
+        }
+        return box -> box.getLatitudeSize() * box.getLongitudeSize() * pointsPerSquareDegree;
+    }
+
+    /**
+     * a histogram of point counts per grid, points spread evenly inside a grid.
+     * an estimate takes constant time, see {@link HistogramDensity}.
+     * @param counts    number of points of every grid of the precision, indexed by {@link GeoHash#ord()}
+     * @param precision at most 30
+     */
+    static DensityEstimate fromCounts(final long[] counts, final int precision) {
+        if (precision < 0 || precision > 30 || counts.length != 1 << precision) {
+            throw new IllegalArgumentException("counts must have 2^precision entries, precision in [0,30]");
+        }
+        return new HistogramDensity(counts, precision);
+    }
+}
@@ -0,0 +1,126 @@
+package geohashutil.asiainfo.com;
+
+import java.io.Serializable;
+
+/**
+ * all points within a distance on the WGS84 ellipsoid of a center, distances are measured by {@link VincentyGeodesy}.<br>
+ * the bounding box is measured by moving from the center, so it narrows in longitude towards the poles;
+ * a circle around a pole or across the antimeridian is bounded by the whole range of longitude.
+ */
+public class GeoCircle implements GeoShape, Serializable {
+    private static final long serialVersionUID = -2861432478412035573L;
+    /**
+     * bearings sampled for the longitude extent, the farthest point east is at 90 degree only on the equator
+     */
+    private static final double BEARING_STEP = 10;
+    /**
+     * the sampled extent misses at most 1-cos(BEARING_STEP/2) of the true one
+     */
+    private static final double EXTENT_MARGIN = 1.01;
+
+    public final WGS84Point center;
+    public final double radiusInMeters;
+    private final BoundingBox boundingBox;
+
+    public GeoCircle(WGS84Point center, double radiusInMeters) {
+        if (!(radiusInMeters >= 0)) {
+            throw new IllegalArgumentException("radius must not be negative");
+        }
+        this.center = center;
+        this.radiusInMeters = radiusInMeters;
+        this.boundingBox = measureBoundingBox();
+    }
+
+    private BoundingBox measureBoundingBox() {
+        final boolean northPole = contains(90, center.longitude);
+        final boolean southPole = contains(-90, center.longitude);
+        final double maxLat = northPole ? 90 : VincentyGeodesy.moveInDirection(center, 0, radiusInMeters).latitude;
+        final double minLat = southPole ? -90 : VincentyGeodesy.moveInDirection(center, 180, radiusInMeters).latitude;
+        if (northPole || southPole) {
+            return new BoundingBox(minLat, maxLat, -180, 180);
+        }
+        //the circle is symmetric about its meridian, the west extent mirrors the east one
+        double extent = 0;
+        for (double bearing = BEARING_STEP; bearing < 180; bearing += BEARING_STEP) {
+            final WGS84Point p = VincentyGeodesy.moveInDirection(center, bearing, radiusInMeters);
+            extent = Math.max(extent, wrap(p.longitude - center.longitude));
+        }
+        extent *= EXTENT_MARGIN;
+        if (center.longitude - extent < -180 || center.longitude + extent > 180) {
+            return new BoundingBox(minLat, maxLat, -180, 180);
+        }
+        return new BoundingBox(minLat, maxLat, center.longitude - extent, center.longitude + extent);
+    }
+
+    /**
+     * @return the longitude difference in (-180,180]
+     */
+    private static double wrap(double deltaLon) {
+        if (deltaLon > 180)
+            return deltaLon - 360;
+        if (deltaLon <= -180)
+            return deltaLon + 360;
+        return deltaLon;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        return VincentyGeodesy.distanceInMeters(center, WGS84Point.Create(latitude, longitude)) <= radiusInMeters;
+    }
+
+    public boolean contains(WGS84Point point) {
+        return VincentyGeodesy.distanceInMeters(center, point) <= radiusInMeters;
+    }
+
+    /**
+     * measures the distance to the nearest point of the box: along the center's meridian if the box spans it,
+     * else the foot of the great circle from the center perpendicular to the nearer meridian side.
+     * the foot is exact on a sphere, a 0.1% margin covers the flattening.
+     */
+    @Override
+    public boolean intersects(BoundingBox box) {
+        if (!boundingBox.intersects(box))
+            return false;
+        final double lat;
+        final double lon;
+        if (center.longitude >= box.minLon && center.longitude <= box.maxLon) {
+            lat = center.latitude;
+            lon = center.longitude;
+        } else {
+            final double toMin = Math.abs(wrap(box.minLon - center.longitude));
+            final double toMax = Math.abs(wrap(box.maxLon - center.longitude));
+            lon = toMin <= toMax ? box.minLon : box.maxLon;
+            final double deltaLon = Math.min(toMin, toMax);
+            if (deltaLon >= 90) {
+                lat = center.latitude >= 0 ? 90 : -90;
+            } else {
+                lat = Math.atan(Math.tan(center.latitude * VincentyGeodesy.degToRad)
+                        / Math.cos(deltaLon * VincentyGeodesy.degToRad)) / VincentyGeodesy.degToRad;
+            }
+        }
+        final double nearestLat = Math.max(box.minLat, Math.min(box.maxLat, lat));
+        final double distance = VincentyGeodesy.distanceInMeters(center, WGS84Point.Create(nearestLat, lon));
+        //NaN: Vincenty did not converge for nearly antipodal points
+        return !(distance > radiusInMeters * 1.001);
+    }
+
+    /**
+     * the farthest point of a box is one of its corners
+     */
+    @Override
+    public boolean contains(BoundingBox box) {
+        return boundingBox.contains(box)
+                && contains(box.minLat, box.minLon) && contains(box.minLat, box.maxLon)
+                && contains(box.maxLat, box.minLon) && contains(box.maxLat, box.maxLon);
+    }
+
+    @Override
+    public String toString() {
+        return "circle " + center + " r=" + radiusInMeters + "m";
+    }
+}
@@ -1,31 +1,31 @@
 package geohashutil.asiainfo.com;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
 
 public final class GeoHash implements Comparable<GeoHash>{
     private static final int MAX_BIT_PRECISION = 64;
     private static final int MAX_CHARACTER_PRECISION = 12;
 
-    private static final int[] BITS = {16, 8, 4, 2, 1};
-    private static final int BASE32_BITS = 5;
+    static final int BASE32_BITS = 5;
     public static final long FIRST_BIT_FLAGGED = 0x8000000000000000L;
-    private static final char[] base32 = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'b', 'c', 'd', 'e', 'f',
+    static final char[] base32 = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'b', 'c', 'd', 'e', 'f',
             'g', 'h', 'j', 'k', 'm', 'n', 'p', 'q', 'r', 's', 't', 'u', 'v', 'w', 'x', 'y', 'z'};
 
-    private final static Map<Character, Integer> decodeMap = new HashMap<>();
-    private static final double D180 = 180;
-    private static final double D360 = 360;
-    private static final double D90 = 90;
-    private static final double[] deltaCached;//deltaCached[i]==360/(2^(i+1))==180/(2^i)
+    static final byte[] base32Decode;//base32Decode[c] == index of c in base32, -1 if c is not a base32 character
+    static final double D180 = 180;
+    static final double D360 = 360;
+    static final double D90 = 90;
+    static final double[] deltaCached;//deltaCached[i]==360/(2^(i+1))==180/(2^i)
     private static final int[] doubleOneBitMask;
     public static final long EvenBitMask = 0XAA_AA_AA_AA_AA_AA_AA_AAL;
     public static final long OddBitMask = 0X55_55_55_55_55_55_55_55L;
 
     static {
+        base32Decode = new byte[128];
+        java.util.Arrays.fill(base32Decode, (byte) -1);
         int sz = base32.length;
         for (int i = 0; i < sz; i++) {
-            decodeMap.put(base32[i], i);
+            base32Decode[base32[i]] = (byte) i;
         }
         deltaCached = new double[64];
         double tmp = D360;
@@ -42,7 +42,6 @@ public final class GeoHash implements Comparable<GeoHash>{
     public final byte significantBits;
 
     //cached computation results
-    public final BoundingBox boundingBox;
     /**
      * 纬度,y
      */
@@ -51,8 +50,6 @@ public final class GeoHash implements Comparable<GeoHash>{
      * 经度,x
      */
     public final long lonBits;
-
-    private String base32Encoding;
     //end cache
 
     public GeoHash dropSignificantBits(int k) {
@@ -66,15 +63,9 @@ public final class GeoHash implements Comparable<GeoHash>{
         long bits = this.bits & tmp;
         int lenY = numberOfBits / 2;
         int lenX = numberOfBits - lenY;
-        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
-        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;//fastDoubleDecPow2(lenY, D180);// == 180/ Math.pow(2, lenY);
         final long latBits = this.latBits >>> (this.getNumLatBits()-lenY);
         final long lngBits = this.lonBits >>> (this.getNumLonBits()-lenX);
-        final double minLat = latBits * latDelta - D90;
-        final double maxLat = minLat + latDelta;
-        final double minLng = lngBits * lngDelta - D180;
-        final double maxLng = minLng + lngDelta;
-        return new GeoHash(bits, (byte) numberOfBits, latBits, lngBits, minLat, maxLat, minLng, maxLng);
+        return new GeoHash(bits, (byte) numberOfBits, latBits, lngBits);
     }
 
     public GeoHash fromPrefix(byte prefixIndex){
@@ -85,15 +76,9 @@ public final class GeoHash implements Comparable<GeoHash>{
         long bits = this.bits & tmp;
         int lenY = numberOfBits / 2;
         int lenX = numberOfBits - lenY;
-        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
-        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;//fastDoubleDecPow2(lenY, D180);// == 180/ Math.pow(2, lenY);
         final long latBits = this.latBits >>> (this.getNumLatBits()-lenY);
         final long lngBits = this.lonBits >>> (this.getNumLonBits()-lenX);
-        final double minLat = latBits * latDelta - D90;
-        final double maxLat = minLat + latDelta;
-        final double minLng = lngBits * lngDelta - D180;
-        final double maxLng = minLng + lngDelta;
-        return new GeoHash(bits, numberOfBits, latBits, lngBits, minLat, maxLat, minLng, maxLng);
+        return new GeoHash(bits, numberOfBits, latBits, lngBits);
     }
 
     public GridPoint getGridPoint(){
@@ -115,34 +100,75 @@ public final class GeoHash implements Comparable<GeoHash>{
         return this.getGridPoint().distanceFrom(geoHash.getGridPoint());
     }
 
-    private GeoHash(final long bits, final byte significantBits, final long lat, final long lon, final double latMin, final double latMax, final double lonMin, final double lonMax) {
+    private GeoHash(final long bits, final byte significantBits, final long lat, final long lon) {
         this.bits = bits;
         this.significantBits = significantBits;
         this.latBits = lat;
         this.lonBits = lon;
-        this.boundingBox = new BoundingBox(latMin, latMax, lonMin, lonMax);
     }
 
-    public String toBase32() {
-        if (base32Encoding != null)
-            return base32Encoding;
+    /**
+     * the bounding box is computed from latBits/lonBits on every call, use the getMin/Max accessors to avoid the allocation
+     */
+    public BoundingBox getBoundingBox() {
+        final double minLat = getMinLat();
+        final double minLon = getMinLon();
+        return new BoundingBox(minLat, minLat + getLatDelta(), minLon, minLon + getLonDelta());
+    }
 
-        if (significantBits % 5 != 0) {
-            throw new IllegalStateException("Cannot convert a geohash to base32 if the precision is not a multiple of 5.");
-        }
+    /**
+     * 纬度,y
+     */
+    public double getMinLat() {
+        return latBits * getLatDelta() - D90;
+    }
 
-        StringBuilder buf = new StringBuilder();
-        final long firstFiveBitsMask = 0xf800000000000000L;
-        long bitsCopy = bits;
-        int partialChunks = (int) Math.ceil(((double) significantBits / 5));
+    /**
+     * 纬度,y
+     */
+    public double getMaxLat() {
+        return getMinLat() + getLatDelta();
+    }
+
+    /**
+     * 经度,x
+     */
+    public double getMinLon() {
+        return lonBits * getLonDelta() - D180;
+    }
+
+    /**
+     * 经度,x
+     */
+    public double getMaxLon() {
+        return getMinLon() + getLonDelta();
+    }
+
+    /**
+     * @return height of the grid, == 180/ Math.pow(2, lenY)
+     */
+    public double getLatDelta() {
+        return deltaCached[significantBits>>>1];
+    }
+
+    /**
+     * @return width of the grid, == 360/ Math.pow(2, lenX)
+     */
+    public double getLonDelta() {
+        final int lenX = significantBits - (significantBits>>>1);
+        return lenX==0? D360 : deltaCached[lenX-1];
+    }
 
-        for (int i = 0; i < partialChunks; i++) {
-            int pointer = (int) ((bitsCopy & firstFiveBitsMask) >>> 59);
-            buf.append(base32[pointer]);
-            bitsCopy <<= 5;
+    /**
+     * not cached, use {@link GeoHashCodec#writeBase32(long, int, byte[], int)} to encode into an existing buffer
+     */
+    public String toBase32() {
+        if (significantBits % 5 != 0) {
+            throw new IllegalStateException("Cannot convert a geohash to base32 if the precision is not a multiple of 5.");
         }
-        base32Encoding = buf.toString();
-        return base32Encoding;
+        char[] buf = new char[significantBits / BASE32_BITS];
+        GeoHashCodec.writeBase32(bits, buf.length, buf, 0);
+        return new String(buf);
     }
 
     protected GeoHash recombineLatLonBitsToHash(final long latBits, final long lonBits) {
@@ -162,40 +188,28 @@ public final class GeoHash implements Comparable<GeoHash>{
         int lenY = significantBits>>>1;
         long otherBits = bits& EvenBitMask |
                 ((bits | EvenBitMask)+(1L<< MAX_BIT_PRECISION-(lenY<<1)) & OddBitMask);
-        double deltaY=deltaCached[lenY];//== 180/ Math.pow(2, lenY);
-        double otherMinLat=boundingBox.maxLat;
-        double otherMaxLat=otherMinLat+deltaY;
-        return new GeoHash(otherBits, significantBits, latBits+1, lonBits, otherMinLat, otherMaxLat, boundingBox.minLon, boundingBox.maxLon);
+        return new GeoHash(otherBits, significantBits, latBits+1 & ~(-1L<<lenY), lonBits);
     }
 
     public GeoHash getSouthernNeighbour() {
         int lenY = significantBits>>>1;
         long otherBits = (bits & EvenBitMask) |
                 ((bits & OddBitMask) - (1L << MAX_BIT_PRECISION - (lenY<<1)) & OddBitMask);
-        double deltaY=deltaCached[lenY];//== 180/ Math.pow(2, lenY);
-        double otherMaxLat=boundingBox.minLat;
-        double otherMinLat=otherMaxLat-deltaY;
-        return new GeoHash(otherBits, significantBits, latBits-1, lonBits, otherMinLat, otherMaxLat, boundingBox.minLon, boundingBox.maxLon);
+        return new GeoHash(otherBits, significantBits, latBits-1 & ~(-1L<<lenY), lonBits);
     }
 
     public GeoHash getEasternNeighbour() {
         int lenX = significantBits - (significantBits >>1);
         long otherBits = (bits& OddBitMask)|
                 (bits |OddBitMask)+(1L<< MAX_BIT_PRECISION-((lenX<<1)-1)) & EvenBitMask;
-        double deltaX=deltaCached[lenX-1];//== 360/ Math.pow(2, lenX);
-        double otherMinLng=boundingBox.maxLon;
-        double otherMaxLng=otherMinLng+deltaX;
-        return new GeoHash(otherBits, significantBits, latBits, lonBits + 1, boundingBox.minLat, boundingBox.maxLat, otherMinLng, otherMaxLng);
+        return new GeoHash(otherBits, significantBits, latBits, lonBits+1 & ~(-1L<<lenX));
     }
 
     public GeoHash getWesternNeighbour() {
         int lenX = significantBits - (significantBits >>1);
         long otherBits = (bits& OddBitMask)|
                 (bits &EvenBitMask)-(1L<< MAX_BIT_PRECISION-((lenX<<1)-1)) & EvenBitMask;
-        double deltaX=deltaCached[lenX-1];//== 360/ Math.pow(2, lenX);
-        double otherMaxLng=boundingBox.minLon;
-        double otherMinLng=otherMaxLng-deltaX;
-        return new GeoHash(otherBits, significantBits, latBits, lonBits - 1, boundingBox.minLat, boundingBox.maxLat, otherMinLng, otherMaxLng);
+        return new GeoHash(otherBits, significantBits, latBits, lonBits-1 & ~(-1L<<lenX));
     }
 
     public GeoHash getNorthernEastNeighbour() {
@@ -204,13 +218,7 @@ public final class GeoHash implements Comparable<GeoHash>{
         long otherBits =
                 ((bits |OddBitMask)+(1L<< MAX_BIT_PRECISION-((lenX<<1)-1)) & EvenBitMask)
                 | ((bits | EvenBitMask)+(1L<< MAX_BIT_PRECISION-(lenY<<1)) & OddBitMask);
-        double deltaY=deltaCached[lenY];//== 180/ Math.pow(2, lenY);
-        double otherMinLat=boundingBox.maxLat;
-        double otherMaxLat=otherMinLat+deltaY;
-        double deltaX=deltaCached[lenX-1];//== 360/ Math.pow(2, lenX);
-        double otherMinLng=boundingBox.maxLon;
-        double otherMaxLng=otherMinLng+deltaX;
-        return new GeoHash(otherBits, significantBits, latBits+1, lonBits+1, otherMinLat, otherMaxLat, otherMinLng, otherMaxLng);
+        return new GeoHash(otherBits, significantBits, latBits+1 & ~(-1L<<lenY), lonBits+1 & ~(-1L<<lenX));
     }
 
     public GeoHash getNorthernWestNeighbour() {
@@ -219,13 +227,7 @@ public final class GeoHash implements Comparable<GeoHash>{
         long otherBits =
                 ((bits &EvenBitMask)-(1L<< MAX_BIT_PRECISION-((lenX<<1)-1)) & EvenBitMask)
                         | ((bits | EvenBitMask)+(1L<< MAX_BIT_PRECISION-(lenY<<1)) & OddBitMask);
-        double deltaY=deltaCached[lenY];//== 180/ Math.pow(2, lenY);
-        double otherMinLat=boundingBox.maxLat;
-        double otherMaxLat=otherMinLat+deltaY;
-        double deltaX=deltaCached[lenX-1];//== 360/ Math.pow(2, lenX);
-        double otherMaxLng=boundingBox.minLon;
-        double otherMinLng=otherMaxLng-deltaX;
-        return new GeoHash(otherBits, significantBits, latBits+1, lonBits-1, otherMinLat, otherMaxLat, otherMinLng, otherMaxLng);
+        return new GeoHash(otherBits, significantBits, latBits+1 & ~(-1L<<lenY), lonBits-1 & ~(-1L<<lenX));
     }
 
     public GeoHash getSouthernEastNeighbour() {
@@ -234,13 +236,7 @@ public final class GeoHash implements Comparable<GeoHash>{
         long otherBits =
                 ((bits |OddBitMask)+(1L<< MAX_BIT_PRECISION-((lenX<<1)-1)) & EvenBitMask)
                         | ((bits & OddBitMask) - (1L << MAX_BIT_PRECISION - (lenY<<1)) & OddBitMask);
-        double deltaY=deltaCached[lenY];//== 180/ Math.pow(2, lenY);
-        double otherMaxLat=boundingBox.minLat;
-        double otherMinLat=otherMaxLat-deltaY;
-        double deltaX=deltaCached[lenX-1];//== 360/ Math.pow(2, lenX);
-        double otherMinLng=boundingBox.maxLon;
-        double otherMaxLng=otherMinLng+deltaX;
-        return new GeoHash(otherBits, significantBits, latBits-1, lonBits+1, otherMinLat, otherMaxLat, otherMinLng, otherMaxLng);
+        return new GeoHash(otherBits, significantBits, latBits-1 & ~(-1L<<lenY), lonBits+1 & ~(-1L<<lenX));
     }
 
     public GeoHash getSouthernWestNeighbour() {
@@ -250,13 +246,7 @@ public final class GeoHash implements Comparable<GeoHash>{
         long otherBits =
                 ((bits &EvenBitMask)-(1L<< MAX_BIT_PRECISION-((lenX<<1)-1)) & EvenBitMask)
                         | ((bits & OddBitMask) - (1L << MAX_BIT_PRECISION - (lenY<<1)) & OddBitMask);
-        double deltaY=deltaCached[lenY];//== 180/ Math.pow(2, lenY);
-        double otherMaxLat=boundingBox.minLat;
-        double otherMinLat=otherMaxLat-deltaY;
-        double deltaX=deltaCached[lenX-1];//== 360/ Math.pow(2, lenX);
-        double otherMaxLng=boundingBox.minLon;
-        double otherMinLng=otherMaxLng-deltaX;
-        return new GeoHash(otherBits, significantBits, latBits-1, lonBits-1, otherMinLat, otherMaxLat, otherMinLng, otherMaxLng);
+        return new GeoHash(otherBits, significantBits, latBits-1 & ~(-1L<<lenY), lonBits-1 & ~(-1L<<lenX));
     }
 
     /**
@@ -265,13 +255,21 @@ public final class GeoHash implements Comparable<GeoHash>{
      * N, NE, E, SE, S, SW, W, NW
      */
     public GeoHash[] getAdjacent() {
-        GeoHash northern = getNorthernNeighbour();
-        GeoHash eastern = getEasternNeighbour();
-        GeoHash southern = getSouthernNeighbour();
-        GeoHash western = getWesternNeighbour();
-        return new GeoHash[]{northern, getNorthernEastNeighbour(), eastern, getSouthernEastNeighbour(),
-                southern,
-                getSouthernWestNeighbour(), western, getNorthernWestNeighbour()};
+        final long[] adjacent = new long[GeoHashCodec.ADJACENT_LENGTH];
+        GeoHashCodec.adjacent(bits, significantBits, adjacent);
+        final int lenY = significantBits>>>1;
+        final int lenX = significantBits - lenY;
+        final long north = latBits+1 & ~(-1L<<lenY), south = latBits-1 & ~(-1L<<lenY);
+        final long east = lonBits+1 & ~(-1L<<lenX), west = lonBits-1 & ~(-1L<<lenX);
+        return new GeoHash[]{
+                new GeoHash(adjacent[1], significantBits, north, lonBits),
+                new GeoHash(adjacent[2], significantBits, north, east),
+                new GeoHash(adjacent[3], significantBits, latBits, east),
+                new GeoHash(adjacent[4], significantBits, south, east),
+                new GeoHash(adjacent[5], significantBits, south, lonBits),
+                new GeoHash(adjacent[6], significantBits, south, west),
+                new GeoHash(adjacent[7], significantBits, latBits, west),
+                new GeoHash(adjacent[8], significantBits, north, west)};
     }
 
     @Override
@@ -309,18 +307,8 @@ public final class GeoHash implements Comparable<GeoHash>{
             , final byte numberOfBits) {
         final int lenY=numberOfBits>>>1;//numberOfBits/2
         final int lenX=numberOfBits-lenY;
-        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
-        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;//fastDoubleDecPow2(lenY, D180);// == 180/ Math.pow(2, lenY);
-        final double minLat = latBits * latDelta - D90;
-        final double maxLat = minLat + latDelta;
-        final double minLng = lngBits * lngDelta - D180;
-        final double maxLng = minLng + lngDelta;
-        long lngInterleavingBits = interleavingInsertZero((int) lngBits);
-        long latInterleavingBits = interleavingInsertZero((int) (lenX == lenY ? latBits : latBits<<1));
-        long bits = (lngInterleavingBits<<1) ^ latInterleavingBits;
-        bits = bits << (MAX_BIT_PRECISION - (lenX<<1));
-
-        return new GeoHash(bits, numberOfBits, latBits, lngBits, minLat, maxLat, minLng, maxLng);
+        final long bits = interleave(latBits, lngBits, lenX, lenY);
+        return new GeoHash(bits, numberOfBits, latBits, lngBits);
     }
 
     public static GeoHash withBitPrecision(final double latitude, final double longitude, final int numberOfBits) {
@@ -329,20 +317,37 @@ public final class GeoHash implements Comparable<GeoHash>{
         final int lenX=numberOfBits-lenY;
         final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
         final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;// == 180/ Math.pow(2, lenY);
-        final long latBits = (long) ((latitude+ D90)/latDelta);
-        final long lngBits = (long) ((longitude+ D180)/lngDelta);
-        final double minLat = latBits * latDelta - D90;
-        final double maxLat = minLat + latDelta;
-        final double minLng = lngBits * lngDelta - D180;
-        final double maxLng = minLng + lngDelta;
+        //latitude 90 and longitude 180 belong to the last grid, not the one after it
+        final long latBits = Math.min((long) ((latitude+ D90)/latDelta), ~(-1L<<lenY));
+        final long lngBits = Math.min((long) ((longitude+ D180)/lngDelta), ~(-1L<<lenX));
+        final long bits = interleave(latBits, lngBits, lenX, lenY);
+        return new GeoHash(bits, (byte) numberOfBits, latBits, lngBits);
+    }
+
+    /**
+     * merge latitude/longitude bits into the left aligned hash bits, longitude comes first
+     */
+    static long interleave(final long latBits, final long lngBits, final int lenX, final int lenY) {
         long lngInterleavingBits = interleavingInsertZero((int) lngBits);
         long latInterleavingBits = interleavingInsertZero((int) (lenX == lenY ? latBits : latBits<<1));
         long bits = (lngInterleavingBits<<1) ^ latInterleavingBits;
-        bits = bits << (MAX_BIT_PRECISION - (lenX<<1));
-        return new GeoHash(bits, (byte) numberOfBits, latBits, lngBits, minLat, maxLat, minLng, maxLng);
+        return bits << (MAX_BIT_PRECISION - (lenX<<1));
     }
 
-    private static long interleavingInsertZero(int bits) {
+    /**
+     * the reverse of {@link #interleavingInsertZero(int)}, gather bits at position 0,2,4... into the low half
+     */
+    static long interleavingRemoveZero(long bits) {
+        bits &= OddBitMask;
+        bits = (bits | bits >>> 1)  & 0x3333333333333333L;
+        bits = (bits | bits >>> 2)  & 0x0f0f0f0f0f0f0f0fL;
+        bits = (bits | bits >>> 4)  & 0x00ff00ff00ff00ffL;
+        bits = (bits | bits >>> 8)  & 0x0000ffff0000ffffL;
+        bits = (bits | bits >>> 16) & 0x00000000ffffffffL;
+        return bits;
+    }
+
+    static long interleavingInsertZero(int bits) {
         long result = doubleOneBitMask[(bits & 0xff)];
         result += (long)(doubleOneBitMask[(bits>>>8) & 0xff]) << 16;
         result += (long)(doubleOneBitMask[(bits>>>16) & 0xff]) << 32;
@@ -359,7 +364,7 @@ public final class GeoHash implements Comparable<GeoHash>{
         return bits;
     }
 
-    private static void CheckLatLng(double latitude, double longitude, int numberOfBits) {
+    static void CheckLatLng(double latitude, double longitude, int numberOfBits) {
         if (numberOfBits > MAX_BIT_PRECISION || numberOfBits <0) {
             throw new IllegalArgumentException("A Geohash can only be " + MAX_BIT_PRECISION + " bits long!");
         }
@@ -382,83 +387,33 @@ public final class GeoHash implements Comparable<GeoHash>{
     }
 
     public static GeoHash fromLongValue(final long bits, final byte significantBits) {
-        final int lenY = significantBits/2;
-        final int lenX = significantBits - lenY;
-        long tmp = bits>>>(MAX_BIT_PRECISION - (lenX<<1));
-        long latBits = 0, lngBits = 0;
-
-        long lowestOneBit = tmp & -tmp;
-        while (lowestOneBit != 0){
-            int lowestIndex = Long.numberOfTrailingZeros(lowestOneBit);
-            long bitSetIndex = 1L << (lowestIndex>>1);
-            if ((OddBitMask & lowestOneBit) != 0){
-                latBits |= bitSetIndex;
-            }else{
-                lngBits |= bitSetIndex;
-            }
-            tmp ^= lowestOneBit;
-            lowestOneBit = tmp & -tmp;
-        }
-        latBits = lenX == lenY ?latBits:latBits>>>1;
-
-        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
-        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;//fastDoubleDecPow2(lenY, D180);// == 180/ Math.pow(2, lenY);
-        final double minLat = latBits * latDelta - D90;
-        final double maxLat = minLat + latDelta;
-        final double minLng = lngBits * lngDelta - D180;
-        final double maxLng = minLng + lngDelta;
-        return new GeoHash(bits, significantBits, latBits, lngBits, minLat, maxLat, minLng, maxLng);
+        final long latBits = GeoHashCodec.decodeLatBits(bits, significantBits);
+        final long lngBits = GeoHashCodec.decodeLonBits(bits, significantBits);
+        return new GeoHash(bits, significantBits, latBits, lngBits);
     }
 
-    //TODO optimized using numberOfLeadingZeros
     /**
-     * build a new {@link GeoHash} from a base32-encoded {@link String}.<br>
+     * build a new {@link GeoHash} from a base32-encoded {@link CharSequence}.<br>
      * This will also set up the hashes bounding box and other values, so it can
      * also be used with functions like within().
      */
-    public static GeoHash fromGeohashString(String geohash) {
-        double latMin = -D90, latMax = D90;
-        double lonMin = -D180, lonMax = D180;
-        double mid;
-        boolean isEvenBit = true;
-        long latBits = 0, lonBits = 0;
-        long bits = 0;
-        byte significantBits = 0;
-
-        for (int i = 0; i < geohash.length(); i++) {
-            int cd = decodeMap.get(geohash.charAt(i));
-            for (int j = 0; j < BASE32_BITS; j++) {
-                int mask = BITS[j];
-                significantBits++;
-                bits <<= 1;
-                if (isEvenBit) {
-                    //lonBits
-                    lonBits <<= 1;
-                    mid = (lonMin + lonMax) / 2;
-                    if ((cd & mask) == 0) {
-                        lonMax = mid;
-                    } else {
-                        lonMin = mid;
-                        bits = bits | 0x1;
-                        lonBits = lonBits | 0x1;
-                    }
-                } else {
-                    //latBits
-                    latBits <<= 1;
-                    mid = (latMin + latMax) / 2;
-                    if ((cd & mask) == 0) {
-                        latMax = mid;
-                    } else {
-                        latMin = mid;
-                        bits = bits | 0x1;
-                        latBits = latBits | 0x1;
-                    }
-                }
-                isEvenBit = !isEvenBit;
-            }
-        }
+    public static GeoHash fromGeohashString(CharSequence geohash) {
+        return fromLongValue(GeoHashCodec.decodeBase32(geohash), (byte) (geohash.length() * BASE32_BITS));
+    }
+
+    /**
+     * same as {@link #fromGeohashString(CharSequence)}, reads the ascii characters src[offset, offset+length)
+     */
+    public static GeoHash fromGeohashString(byte[] src, int offset, int length) {
+        return fromLongValue(GeoHashCodec.decodeBase32(src, offset, length), (byte) (length * BASE32_BITS));
+    }
 
-        return new GeoHash(bits << (MAX_BIT_PRECISION - significantBits), significantBits, latBits, lonBits, latMin, latMax, lonMin, lonMax);
+    /**
+     * same as {@link #fromGeohashString(CharSequence)}, reads the ascii characters between position and limit,
+     * the position of src is not changed
+     */
+    public static GeoHash fromGeohashString(ByteBuffer src) {
+        return fromLongValue(GeoHashCodec.decodeBase32(src), (byte) (src.remaining() * BASE32_BITS));
     }
 
     public static final int commonPrefixLength(long a, long b) {
@@ -473,9 +428,9 @@ public final class GeoHash implements Comparable<GeoHash>{
     @Override
     public String toString() {
         if (significantBits % 5 == 0) {
-            return String.format("%s -> %s -> %s", Long.toBinaryString(bits), boundingBox, toBase32());
+            return String.format("%s -> %s -> %s", Long.toBinaryString(bits), getBoundingBox(), toBase32());
         } else {
-            return String.format("%s -> %s, bits: %d", Long.toBinaryString(bits), boundingBox, significantBits);
+            return String.format("%s -> %s, bits: %d", Long.toBinaryString(bits), getBoundingBox(), significantBits);
         }
     }
     //functions that have no use case for now
@@ -0,0 +1,110 @@
+package geohashutil.asiainfo.com;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * hands out canonical {@link GeoHash} instances, so equal hashes are usually the same object.<br>
+ * grids of at most internedBits bits are interned in a table per precision indexed by {@link GeoHash#ord()},
+ * the table of a precision is allocated on first use and takes 4 or 8 bytes per grid: 2^p slots for p bits.<br>
+ * finer grids go through a bounded direct mapped cache, a new hash simply replaces the one in its slot.<br>
+ * all methods are thread safe and lock free, the returned hashes have no bits set after significantBits.
+ */
+public final class GeoHashCache {
+    private static final int MAX_BIT_PRECISION = 64;
+    public static final int MAX_INTERNED_BITS = 25;
+    public static final int DEFAULT_INTERNED_BITS = 20;
+    public static final int DEFAULT_HOT_CAPACITY = 1 << 16;
+
+    private final int internedBits;
+    private final AtomicReferenceArray<AtomicReferenceArray<GeoHash>> interned;
+    private final AtomicReferenceArray<GeoHash> hot;
+    private final int hotMask;
+
+    public GeoHashCache() {
+        this(DEFAULT_INTERNED_BITS, DEFAULT_HOT_CAPACITY);
+    }
+
+    /**
+     * @param internedBits grids of [0,internedBits] bits are interned, at most {@link #MAX_INTERNED_BITS}
+     * @param hotCapacity  number of slots for finer grids, rounded up to a power of 2
+     */
+    public GeoHashCache(int internedBits, int hotCapacity) {
+        if (internedBits < 0 || internedBits > MAX_INTERNED_BITS) {
+            throw new IllegalArgumentException("internedBits must be in [0," + MAX_INTERNED_BITS + "]");
+        }
+        if (hotCapacity <= 0 || hotCapacity > 1 << 30) {
+            throw new IllegalArgumentException("hotCapacity must be in (0,2^30]");
+        }
+        this.internedBits = internedBits;
+        this.interned = new AtomicReferenceArray<>(internedBits + 1);
+        int capacity = Integer.highestOneBit(hotCapacity - 1) << 1;
+        capacity = capacity == 0 ? 1 : capacity;
+        this.hot = new AtomicReferenceArray<>(capacity);
+        this.hotMask = capacity - 1;
+    }
+
+    public GeoHash withBitPrecision(final double latitude, final double longitude, final int numberOfBits) {
+        return fromLongValue(GeoHashCodec.encode(latitude, longitude, numberOfBits), (byte) numberOfBits);
+    }
+
+    public GeoHash fromLongValue(long bits, final byte significantBits) {
+        if (significantBits < 0 || significantBits > MAX_BIT_PRECISION) {
+            throw new IllegalArgumentException("significantBits must be in [0," + MAX_BIT_PRECISION + "]");
+        }
+        bits &= significantBits == 0 ? 0 : -1L << (MAX_BIT_PRECISION - significantBits);
+        if (significantBits <= internedBits) {
+            final AtomicReferenceArray<GeoHash> table = tableOf(significantBits);
+            final int index = (int) (bits >>> (MAX_BIT_PRECISION - significantBits));
+            GeoHash hash = table.get(index);
+            if (hash == null) {
+                hash = GeoHash.fromLongValue(bits, significantBits);
+                if (!table.compareAndSet(index, null, hash)) {
+                    hash = table.get(index);
+                }
+            }
+            return hash;
+        }
+        final int slot = (int) (((bits ^ significantBits) * 0x9E3779B97F4A7C15L) >>> 32) & hotMask;
+        GeoHash hash = hot.get(slot);
+        if (hash == null || hash.bits != bits || hash.significantBits != significantBits) {
+            hash = GeoHash.fromLongValue(bits, significantBits);
+            hot.lazySet(slot, hash);
+        }
+        return hash;
+    }
+
+    public GeoHash intern(GeoHash hash) {
+        return fromLongValue(hash.bits, hash.significantBits);
+    }
+
+    /**
+     * same as {@link GeoHash#dropSignificantBits(int)}
+     */
+    public GeoHash dropSignificantBits(GeoHash hash, int k) {
+        if (k >= hash.significantBits)
+            return null;
+        if (k <= 0)
+            return intern(hash);
+        return fromLongValue(hash.bits, (byte) (hash.significantBits - k));
+    }
+
+    /**
+     * same as {@link GeoHash#fromPrefix(byte)}
+     */
+    public GeoHash fromPrefix(GeoHash hash, byte prefixIndex) {
+        if (prefixIndex < 0 || prefixIndex > MAX_BIT_PRECISION)
+            return null;
+        return fromLongValue(hash.bits, (byte) (MAX_BIT_PRECISION - prefixIndex));
+    }
+
+    private AtomicReferenceArray<GeoHash> tableOf(int significantBits) {
+        AtomicReferenceArray<GeoHash> table = interned.get(significantBits);
+        if (table == null) {
+            table = new AtomicReferenceArray<>(1 << significantBits);
+            if (!interned.compareAndSet(significantBits, null, table)) {
+                table = interned.get(significantBits);
+            }
+        }
+        return table;
+    }
+}
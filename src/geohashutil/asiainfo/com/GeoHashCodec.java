@@ -0,0 +1,289 @@
+package geohashutil.asiainfo.com;
+
+import java.nio.ByteBuffer;
+
+import static geohashutil.asiainfo.com.GeoHash.D180;
+import static geohashutil.asiainfo.com.GeoHash.D360;
+import static geohashutil.asiainfo.com.GeoHash.D90;
+import static geohashutil.asiainfo.com.GeoHash.deltaCached;
+
+/**
+ * primitive counterpart of {@link GeoHash}, works on the raw {@link GeoHash#bits} and never allocates.<br>
+ * the results are the same as the ones of {@link GeoHash#withBitPrecision(double, double, int)} and
+ * {@link GeoHash#fromLongValue(long, byte)}
+ */
+public final class GeoHashCodec {
+    private static final int MAX_BIT_PRECISION = 64;
+    private static final int FIRST_FIVE_BITS_SHIFT = MAX_BIT_PRECISION - 5;
+    /**
+     * length of the output of {@link #adjacent(long, int, long[])}
+     */
+    public static final int ADJACENT_LENGTH = 9;
+
+    private GeoHashCodec() {
+    }
+
+    /**
+     * @return the same value as {@link GeoHash#bits} of {@link GeoHash#withBitPrecision(double, double, int)}
+     */
+    public static long encode(final double latitude, final double longitude, final int numberOfBits) {
+        GeoHash.CheckLatLng(latitude, longitude, numberOfBits);
+        final int lenY = numberOfBits>>>1;//numberOfBits/2
+        final int lenX = numberOfBits-lenY;
+        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
+        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;// == 180/ Math.pow(2, lenY);
+        final long latBits = Math.min((long) ((latitude+ D90)/latDelta), ~(-1L<<lenY));
+        final long lngBits = Math.min((long) ((longitude+ D180)/lngDelta), ~(-1L<<lenX));
+        return GeoHash.interleave(latBits, lngBits, lenX, lenY);
+    }
+
+    /**
+     * columnar version of {@link #encode(double, double, int)}: out[i] = encode(latitudes[i], longitudes[i], numberOfBits)
+     */
+    public static void encode(final double[] latitudes, final double[] longitudes, final int numberOfBits, final long[] out) {
+        if (latitudes.length != longitudes.length) {
+            throw new IllegalArgumentException("latitudes and longitudes must have the same length");
+        }
+        encode(latitudes, longitudes, 0, latitudes.length, numberOfBits, out, 0);
+    }
+
+    /**
+     * out[outOffset+i] = encode(latitudes[offset+i], longitudes[offset+i], numberOfBits) for i in [0,length)
+     */
+    public static void encode(final double[] latitudes, final double[] longitudes, final int offset, final int length
+            , final int numberOfBits, final long[] out, final int outOffset) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            GeoHash.CheckLatLng(latitudes[i], longitudes[i], numberOfBits);
+        }
+        final int lenY = numberOfBits>>>1;//numberOfBits/2
+        final int lenX = numberOfBits-lenY;
+        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
+        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;// == 180/ Math.pow(2, lenY);
+        final long maxLatBits = ~(-1L<<lenY);
+        final long maxLngBits = ~(-1L<<lenX);
+        //same as GeoHash.interleave, but without table lookups and branches inside the loop
+        final int lngShift = MAX_BIT_PRECISION + 1 - (lenX<<1);
+        final int latShift = MAX_BIT_PRECISION - (lenY<<1);
+        for (int i = 0; i < length; i++) {
+            final long latBits = Math.min((long) ((latitudes[offset + i] + D90)/latDelta), maxLatBits);
+            final long lngBits = Math.min((long) ((longitudes[offset + i] + D180)/lngDelta), maxLngBits);
+            out[outOffset + i] = (spread(lngBits) << lngShift) | (spread(latBits) << latShift);
+        }
+    }
+
+    /**
+     * insert a zero before every bit of the low 32 bits, the magic number version of GeoHash.interleavingInsertZero
+     */
+    private static long spread(long bits) {
+        bits &= 0x00000000ffffffffL;
+        bits = (bits | bits << 16) & 0x0000ffff0000ffffL;
+        bits = (bits | bits << 8) & 0x00ff00ff00ff00ffL;
+        bits = (bits | bits << 4) & 0x0f0f0f0f0f0f0f0fL;
+        bits = (bits | bits << 2) & 0x3333333333333333L;
+        bits = (bits | bits << 1) & 0x5555555555555555L;
+        return bits;
+    }
+
+    /**
+     * @return the same value as {@link GeoHash#latBits}, 纬度,y
+     */
+    public static long decodeLatBits(final long bits, final int significantBits) {
+        final int lenY = significantBits>>>1;
+        if (lenY == 0)
+            return 0;
+        return GeoHash.interleavingRemoveZero(bits >>> (MAX_BIT_PRECISION - (lenY<<1)));
+    }
+
+    /**
+     * @return the same value as {@link GeoHash#lonBits}, 经度,x
+     */
+    public static long decodeLonBits(final long bits, final int significantBits) {
+        final int lenX = significantBits - (significantBits>>>1);
+        if (lenX == 0)
+            return 0;
+        return GeoHash.interleavingRemoveZero(bits >>> (MAX_BIT_PRECISION + 1 - (lenX<<1)));
+    }
+
+    /**
+     * split the hash into both lanes at once, constant time whatever the bits are
+     * @return lonBits in the high 32 bits and latBits in the low 32 bits,
+     * that is latBits == (r & 0xffffffffL) and lonBits == r >>> 32
+     */
+    public static long deinterleave(final long bits, final int significantBits) {
+        return decodeLonBits(bits, significantBits) << 32 | decodeLatBits(bits, significantBits);
+    }
+
+    /**
+     * the 3x3 neighbourhood in one pass, out[0] is the hash itself, followed by the same order as
+     * {@link GeoHash#getAdjacent()}: N, NE, E, SE, S, SW, W, NW.<br>
+     * longitude wraps around the antimeridian, latitude wraps from one pole to the other like the
+     * neighbour methods of {@link GeoHash}; bits after significantBits are cleared.
+     */
+    public static void adjacent(final long bits, final int significantBits, final long[] out) {
+        final int lenY = significantBits>>>1;
+        final int lenX = significantBits-lenY;
+        final long significantMask = significantBits == 0 ? 0 : -1L << (MAX_BIT_PRECISION - significantBits);
+        final long latLane = bits & GeoHash.OddBitMask & significantMask;
+        final long lonLane = bits & GeoHash.EvenBitMask & significantMask;
+        //lowest significant bit of each lane, 0 if the lane is empty
+        final long latOne = lenY == 0 ? 0 : 1L << (MAX_BIT_PRECISION - (lenY<<1));
+        final long lonOne = lenX == 0 ? 0 : 1L << (MAX_BIT_PRECISION + 1 - (lenX<<1));
+        //filling the other lane with ones lets the carry run through it, overflow drops off the top == wraparound
+        final long north = ((latLane | GeoHash.EvenBitMask) + latOne) & GeoHash.OddBitMask & significantMask;
+        final long south = (latLane - latOne) & GeoHash.OddBitMask & significantMask;
+        final long east = ((lonLane | GeoHash.OddBitMask) + lonOne) & GeoHash.EvenBitMask & significantMask;
+        final long west = (lonLane - lonOne) & GeoHash.EvenBitMask & significantMask;
+        out[0] = latLane | lonLane;
+        out[1] = north | lonLane;
+        out[2] = north | east;
+        out[3] = latLane | east;
+        out[4] = south | east;
+        out[5] = south | lonLane;
+        out[6] = south | west;
+        out[7] = latLane | west;
+        out[8] = north | west;
+    }
+
+    /**
+     * move the hash latSteps grids north (negative: south) and lonSteps grids east (negative: west),
+     * wraps the same way as {@link #adjacent(long, int, long[])}
+     */
+    public static long move(final long bits, final int significantBits, final long latSteps, final long lonSteps) {
+        final int lenY = significantBits>>>1;
+        final int lenX = significantBits-lenY;
+        final long significantMask = significantBits == 0 ? 0 : -1L << (MAX_BIT_PRECISION - significantBits);
+        //a step of -1 is the same as 2^len-1 steps, so only addition is needed
+        final long latDelta = spread(latSteps & ~(-1L<<lenY)) << (MAX_BIT_PRECISION - (lenY<<1));
+        final long lonDelta = spread(lonSteps & ~(-1L<<lenX)) << (MAX_BIT_PRECISION + 1 - (lenX<<1));
+        final long latLane = ((bits | GeoHash.EvenBitMask) + latDelta) & GeoHash.OddBitMask & significantMask;
+        final long lonLane = ((bits | GeoHash.OddBitMask) + lonDelta) & GeoHash.EvenBitMask & significantMask;
+        return latLane | lonLane;
+    }
+
+    /**
+     * write the bounding box of the hash into out[0..3] as minLat, maxLat, minLon, maxLon,
+     * the same order as {@link BoundingBox#BoundingBox(double, double, double, double)}
+     */
+    public static void boundingBoxInto(final long bits, final int significantBits, final double[] out) {
+        boundingBoxInto(bits, significantBits, out, 0);
+    }
+
+    public static void boundingBoxInto(final long bits, final int significantBits, final double[] out, final int offset) {
+        final int lenY = significantBits>>>1;
+        final int lenX = significantBits-lenY;
+        final double lngDelta = lenX==0? D360 : deltaCached[lenX-1];// == 360/ Math.pow(2, lenX);
+        final double latDelta = lenX == lenY ? lngDelta /2 : lngDelta;// == 180/ Math.pow(2, lenY);
+        final double minLat = decodeLatBits(bits, significantBits) * latDelta - D90;
+        final double minLng = decodeLonBits(bits, significantBits) * lngDelta - D180;
+        out[offset] = minLat;
+        out[offset + 1] = minLat + latDelta;
+        out[offset + 2] = minLng;
+        out[offset + 3] = minLng + lngDelta;
+    }
+
+    /**
+     * @return the same value as {@link GeoHash#bits} of {@link GeoHash#fromGeohashString(CharSequence)},
+     * the number of significant bits is 5 * geohash.length()
+     */
+    public static long decodeBase32(final CharSequence geohash) {
+        final int length = geohash.length();
+        checkBase32Length(length);
+        long bits = 0;
+        for (int i = 0; i < length; i++) {
+            bits = appendBase32(bits, geohash.charAt(i));
+        }
+        return bits << (MAX_BIT_PRECISION - length * GeoHash.BASE32_BITS);
+    }
+
+    public static long decodeBase32(final byte[] src, final int offset, final int length) {
+        checkBase32Length(length);
+        long bits = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            bits = appendBase32(bits, src[i]);
+        }
+        return bits << (MAX_BIT_PRECISION - length * GeoHash.BASE32_BITS);
+    }
+
+    /**
+     * decode the ascii characters between position and limit, the position of src is not changed
+     */
+    public static long decodeBase32(final ByteBuffer src) {
+        final int length = src.remaining();
+        checkBase32Length(length);
+        long bits = 0;
+        for (int i = src.position(), end = src.limit(); i < end; i++) {
+            bits = appendBase32(bits, src.get(i));
+        }
+        return bits << (MAX_BIT_PRECISION - length * GeoHash.BASE32_BITS);
+    }
+
+    /**
+     * write the first chars base32 characters of bits into dst[offset, offset+chars)
+     * @return offset + chars
+     */
+    public static int writeBase32(final long bits, final int chars, final byte[] dst, final int offset) {
+        checkBase32Length(chars);
+        long bitsCopy = bits;
+        for (int i = offset, end = offset + chars; i < end; i++) {
+            dst[i] = (byte) GeoHash.base32[(int) (bitsCopy >>> FIRST_FIVE_BITS_SHIFT)];
+            bitsCopy <<= GeoHash.BASE32_BITS;
+        }
+        return offset + chars;
+    }
+
+    public static int writeBase32(final long bits, final int chars, final char[] dst, final int offset) {
+        checkBase32Length(chars);
+        long bitsCopy = bits;
+        for (int i = offset, end = offset + chars; i < end; i++) {
+            dst[i] = GeoHash.base32[(int) (bitsCopy >>> FIRST_FIVE_BITS_SHIFT)];
+            bitsCopy <<= GeoHash.BASE32_BITS;
+        }
+        return offset + chars;
+    }
+
+    /**
+     * absolute version, the position of dst is not changed
+     */
+    public static int writeBase32(final long bits, final int chars, final ByteBuffer dst, final int offset) {
+        checkBase32Length(chars);
+        long bitsCopy = bits;
+        for (int i = offset, end = offset + chars; i < end; i++) {
+            dst.put(i, (byte) GeoHash.base32[(int) (bitsCopy >>> FIRST_FIVE_BITS_SHIFT)]);
+            bitsCopy <<= GeoHash.BASE32_BITS;
+        }
+        return offset + chars;
+    }
+
+    /**
+     * write every hash of bits back to back, each one takes chars bytes
+     * @return offset + chars * bits.length
+     */
+    public static int writeBase32(final long[] bits, final int chars, final byte[] dst, int offset) {
+        for (long b : bits) {
+            offset = writeBase32(b, chars, dst, offset);
+        }
+        return offset;
+    }
+
+    public static int writeBase32(final long[] bits, final int chars, final ByteBuffer dst, int offset) {
+        for (long b : bits) {
+            offset = writeBase32(b, chars, dst, offset);
+        }
+        return offset;
+    }
+
+    private static long appendBase32(final long bits, final int c) {
+        //negative bytes and non ascii chars are rejected by the mask
+        final int value = (c & ~0x7f) == 0 ? GeoHash.base32Decode[c] : -1;
+        if (value < 0) {
+            throw new IllegalArgumentException("Invalid base32 character: " + (char) (c & 0xffff));
+        }
+        return bits << GeoHash.BASE32_BITS | value;
+    }
+
+    private static void checkBase32Length(final int length) {
+        if (length < 0 || length * GeoHash.BASE32_BITS > MAX_BIT_PRECISION) {
+            throw new IllegalArgumentException("A geohash can only be " + MAX_BIT_PRECISION / GeoHash.BASE32_BITS + " character long.");
+        }
+    }
+}
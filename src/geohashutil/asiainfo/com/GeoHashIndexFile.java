@@ -0,0 +1,200 @@
+package geohashutil.asiainfo.com;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.function.IntConsumer;
+
+/**
+ * an immutable index file of points queried in place through {@link FileChannel#map}, nothing is read into the heap.<br>
+ * layout, all numbers big endian:
+ * <pre>
+ * header     MAGIC, VERSION, count, recordSize, directoryBits (int, int, long, int, int): HEADER_SIZE bytes
+ * directory  2^directoryBits+1 longs: position of the first key with a prefix of directoryBits bits not below p
+ * keys       count longs: 64 bit {@link GeoHash#bits}, sorted as unsigned longs
+ * records    count records of recordSize bytes, the record of a key at the same position
+ * </pre>
+ * a lookup reads one directory slot and binary searches the keys of its prefix only. the directory is dense, it has a slot
+ * for every prefix whether or not keys have it: 8KB at 10 bits, 512KB at the default 16 bits, 128MB at the most 24 bits.
+ * every section must fit into one mapping of 2GB, i.e. at most 2^28 keys. instances are safe for concurrent reads.
+ */
+public class GeoHashIndexFile implements Closeable {
+    public static final int MAGIC = 0x47484958;//GHIX
+    public static final int VERSION = 1;
+    static final int HEADER_SIZE = 24;
+    public static final int DEFAULT_DIRECTORY_BITS = 16;
+    private static final int MAX_DIRECTORY_BITS = 24;
+    /**
+     * size of the lanes of a 64 bit key
+     */
+    private static final double LAT_DELTA = GeoHash.deltaCached[32];
+    private static final double LON_DELTA = GeoHash.deltaCached[31];
+
+    private final FileChannel channel;
+    private final int count;
+    private final int recordSize;
+    private final int directoryBits;
+    private final LongBuffer directory;
+    private final LongBuffer keys;
+    private final ByteBuffer records;
+
+    private GeoHashIndexFile(FileChannel channel) throws IOException {
+        this.channel = channel;
+        final MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+        if (header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IOException("not a geohash index file of version " + VERSION);
+        }
+        final long n = header.getLong(8);
+        recordSize = header.getInt(16);
+        directoryBits = header.getInt(20);
+        if (n < 0 || n > Integer.MAX_VALUE >>> 3 || recordSize < 0 || (long) recordSize * n > Integer.MAX_VALUE
+                || directoryBits < 0 || directoryBits > MAX_DIRECTORY_BITS) {
+            throw new IOException("corrupt header: " + n + " keys of " + recordSize + " bytes, directory of "
+                    + directoryBits + " bits");
+        }
+        count = (int) n;
+        final long directoryOffset = HEADER_SIZE;
+        final long keysOffset = directoryOffset + (((1L << directoryBits) + 1) << 3);
+        final long recordsOffset = keysOffset + ((long) count << 3);
+        if (channel.size() < recordsOffset + (long) count * recordSize) {
+            throw new IOException("truncated index file");
+        }
+        directory = channel.map(FileChannel.MapMode.READ_ONLY, directoryOffset, keysOffset - directoryOffset).asLongBuffer();
+        keys = channel.map(FileChannel.MapMode.READ_ONLY, keysOffset, recordsOffset - keysOffset).asLongBuffer();
+        records = channel.map(FileChannel.MapMode.READ_ONLY, recordsOffset, (long) count * recordSize);
+    }
+
+    public static GeoHashIndexFile open(Path path) throws IOException {
+        final FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        try {
+            return new GeoHashIndexFile(channel);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * write the keys and their records into a new index file, the keys need not be sorted
+     * @param records      record i of recordSize bytes belongs to keys[i]
+     * @param directoryBits in [0,24], the directory takes (2^directoryBits+1)*8 bytes however few keys there are
+     */
+    public static void write(Path path, long[] keys, byte[] records, int recordSize, int directoryBits) throws IOException {
+        if (recordSize < 0 || (long) keys.length * recordSize != records.length) {
+            throw new IllegalArgumentException("records must hold one record of recordSize bytes per key");
+        }
+        if (directoryBits < 0 || directoryBits > MAX_DIRECTORY_BITS) {
+            throw new IllegalArgumentException("directoryBits must be in [0," + MAX_DIRECTORY_BITS + "]");
+        }
+        if (keys.length > Integer.MAX_VALUE >>> 3 || (long) keys.length * recordSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("too many keys or records for one mapping");
+        }
+        final int[] order = GeoHashPointIndex.sortOrder(keys);
+        try (OutputStream file = Files.newOutputStream(path);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(file, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(keys.length);
+            out.writeInt(recordSize);
+            out.writeInt(directoryBits);
+            int position = 0;
+            for (long prefix = 0; prefix <= 1L << directoryBits; prefix++) {
+                while (position < keys.length && prefixOf(keys[order[position]], directoryBits) < prefix) {
+                    ++position;
+                }
+                out.writeLong(position);
+            }
+            for (int from : order) {
+                out.writeLong(keys[from]);
+            }
+            for (int from : order) {
+                out.write(records, from * recordSize, recordSize);
+            }
+        }
+    }
+
+    /**
+     * index the points of a {@link GeoHashPointIndex} with their payloads as records of 4 bytes
+     */
+    public static void write(Path path, GeoHashPointIndex index) throws IOException {
+        final long[] keys = new long[index.size()];
+        final ByteBuffer records = ByteBuffer.allocate(index.size() << 2);
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = index.getBits(i);
+            records.putInt(index.getPayload(i));
+        }
+        write(path, keys, records.array(), 4, DEFAULT_DIRECTORY_BITS);
+    }
+
+    private static long prefixOf(long key, int directoryBits) {
+        return directoryBits == 0 ? 0 : key >>> (64 - directoryBits);
+    }
+
+    public int size() {
+        return count;
+    }
+
+    public int getRecordSize() {
+        return recordSize;
+    }
+
+    public long getKey(int position) {
+        return keys.get(position);
+    }
+
+    /**
+     * @return the record at the position without copying, positioned at its first byte
+     */
+    public ByteBuffer getRecord(int position) {
+        return records.duplicate().position(position * recordSize).limit((position + 1) * recordSize).slice();
+    }
+
+    public int getRecordInt(int position, int offset) {
+        return records.getInt(position * recordSize + offset);
+    }
+
+    public long getRecordLong(int position, int offset) {
+        return records.getLong(position * recordSize + offset);
+    }
+
+    public double getLatitude(int position) {
+        return GeoHashCodec.decodeLatBits(keys.get(position), 64) * LAT_DELTA - GeoHash.D90;
+    }
+
+    public double getLongitude(int position) {
+        return GeoHashCodec.decodeLonBits(keys.get(position), 64) * LON_DELTA - GeoHash.D180;
+    }
+
+    /**
+     * @return the first position whose key is not below the key, as unsigned longs
+     */
+    public int lowerBound(final long key) {
+        final int prefix = (int) prefixOf(key, directoryBits);
+        return GeoHashPointIndex.lowerBound(key, (int) directory.get(prefix), (int) directory.get(prefix + 1), keys::get);
+    }
+
+    /**
+     * call the consumer with the position of every key in the box; the point of a key is the corner of its 64 bit grid,
+     * within 1cm of the point it was encoded from
+     */
+    public void forEachInBox(final BoundingBox box, final IntConsumer consumer) {
+        GeoHashPointIndex.forEachInBox(box, count, this::lowerBound, this::getLatitude, this::getLongitude, consumer);
+    }
+
+    /**
+     * the mappings stay valid until they are garbage collected
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
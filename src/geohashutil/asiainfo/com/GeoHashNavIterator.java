@@ -1,6 +1,7 @@
 package geohashutil.asiainfo.com;
 
 import java.util.Iterator;
+import java.util.NoSuchElementException;
 
 public class GeoHashNavIterator implements Iterator<GeoHashNavIterator.GeoHashNavPair> {
     public class GeoHashNavPair{
@@ -14,10 +15,19 @@ public class GeoHashNavIterator implements Iterator<GeoHashNavIterator.GeoHashNa
     }
 
     public final GeoHash centerGrid;
+    public final int maxStep;
     private int latStep,lonStep,squareStep;
 
     public GeoHashNavIterator(GeoHash geoHash) {
+        this(geoHash, Integer.MAX_VALUE);
+    }
+
+    /**
+     * @param maxStep the last square returned, hasNext() is false after it
+     */
+    public GeoHashNavIterator(GeoHash geoHash, int maxStep) {
         centerGrid=geoHash;
+        this.maxStep = maxStep;
     }
 
     public void reset(){
@@ -26,11 +36,13 @@ public class GeoHashNavIterator implements Iterator<GeoHashNavIterator.GeoHashNa
 
     @Override
     public boolean hasNext() {
-        return true;
+        return squareStep <= maxStep;
     }
 
     @Override
     public GeoHashNavPair next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
         GeoHashNavPair r;
         if (squareStep == 0)
         {
@@ -48,7 +60,7 @@ public class GeoHashNavIterator implements Iterator<GeoHashNavIterator.GeoHashNa
                 lonStep++;
             }else if (lonStep == squareStep && latStep>-squareStep){
                 latStep--;
-            }else if (latStep == -squareStep && lonStep < -squareStep){
+            }else if (latStep == -squareStep && lonStep > -squareStep){
                 lonStep--;
             }
         }
@@ -60,4 +72,77 @@ public class GeoHashNavIterator implements Iterator<GeoHashNavIterator.GeoHashNa
     public void remove() {
         throw new UnsupportedOperationException();
     }
+
+    /**
+     * @return number of grids in the square at radius steps from the center, 1 for the center itself
+     */
+    public static int ringSize(int radius) {
+        return radius == 0 ? 1 : radius << 3;
+    }
+
+    /**
+     * @return number of grids of all squares in [0,maxRadius], == (2*maxRadius+1)^2
+     */
+    public static int ringsSize(int maxRadius) {
+        int side = (maxRadius << 1) + 1;
+        return side * side;
+    }
+
+    /**
+     * write the square at radius steps around the hash into out, in the same order as the iterator:
+     * from the south west corner north along the west side, then east, south and west back to the start.<br>
+     * every grid is one lane increment of the previous one, no grid is recombined from lat/lon bits.
+     * the square wraps around the world like {@link GeoHashCodec#adjacent(long, int, long[])},
+     * so it repeats grids once 2*radius+1 exceeds the number of grids along a lane.
+     * @return number of grids written, {@link #ringSize(int)}
+     */
+    public static int ring(final long bits, final int significantBits, final int radius, final long[] out, final int offset) {
+        if (radius < 0)
+            throw new IllegalArgumentException("radius must not be negative");
+        final long start = GeoHashCodec.move(bits, significantBits, -radius, -radius);
+        if (radius == 0) {
+            out[offset] = start;
+            return 1;
+        }
+        final int lenY = significantBits>>>1;
+        final int lenX = significantBits-lenY;
+        final long significantMask = significantBits == 0 ? 0 : -1L << (64 - significantBits);
+        final long latOne = lenY == 0 ? 0 : 1L << (64 - (lenY<<1));
+        final long lonOne = lenX == 0 ? 0 : 1L << (65 - (lenX<<1));
+        final long latMask = GeoHash.OddBitMask & significantMask;
+        final long lonMask = GeoHash.EvenBitMask & significantMask;
+        long latLane = start & latMask;
+        long lonLane = start & lonMask;
+        final int side = radius << 1;
+        int index = offset;
+        for (int i = 0; i < side; i++) {//west side, going north
+            out[index++] = latLane | lonLane;
+            latLane = ((latLane | GeoHash.EvenBitMask) + latOne) & latMask;
+        }
+        for (int i = 0; i < side; i++) {//north side, going east
+            out[index++] = latLane | lonLane;
+            lonLane = ((lonLane | GeoHash.OddBitMask) + lonOne) & lonMask;
+        }
+        for (int i = 0; i < side; i++) {//east side, going south
+            out[index++] = latLane | lonLane;
+            latLane = (latLane - latOne) & latMask;
+        }
+        for (int i = 0; i < side; i++) {//south side, going west
+            out[index++] = latLane | lonLane;
+            lonLane = (lonLane - lonOne) & lonMask;
+        }
+        return index - offset;
+    }
+
+    /**
+     * write all squares from radius 0 to maxRadius into out, square by square
+     * @return number of grids written, {@link #ringsSize(int)}
+     */
+    public static int rings(final long bits, final int significantBits, final int maxRadius, final long[] out, final int offset) {
+        int index = offset;
+        for (int radius = 0; radius <= maxRadius; radius++) {
+            index += ring(bits, significantBits, radius, out, index);
+        }
+        return index - offset;
+    }
 }
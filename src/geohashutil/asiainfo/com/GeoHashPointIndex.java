@@ -0,0 +1,399 @@
+package geohashutil.asiainfo.com;
+
+import com.asiainfo.cem.common.utils.Pairs;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.IntConsumer;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.IntToLongFunction;
+import java.util.function.LongToIntFunction;
+
+/**
+ * an immutable in-memory index of points, column by column: the 64 bit geohash of every point sorted as unsigned
+ * longs, with the latitude, longitude and an int payload of the point at the same position, 28 bytes per point.<br>
+ * a query covers its region with {@link GeoHashSearchUtil}, finds the points of every key range by binary search
+ * and tests them exactly, points in grids inside the region skip the exact test.
+ */
+public class GeoHashPointIndex {
+    static final int KEY_BITS = 64;
+    /**
+     * ranges of a box query, a few wide ranges are cheaper than many seeks
+     */
+    private static final int BOX_RANGES = 32;
+    private static final int CIRCLE_CELLS = 64;
+    /**
+     * finest precision of the rings of {@link #nearest(WGS84Point, int)}, about 20m
+     */
+    private static final int NEAREST_MAX_BITS = 40;
+    /**
+     * meridional radius of curvature of WGS84 at the equator, the smallest radius of curvature of the ellipsoid
+     */
+    private static final double MIN_RADIUS = 6335439;
+    private static final double BOUND_SLACK = 0.999;
+
+    private final long[] keys;
+    /**
+     * 纬度,y
+     */
+    private final double[] lats;
+    /**
+     * 经度,x
+     */
+    private final double[] lons;
+    private final int[] payloads;
+
+    public GeoHashPointIndex(double[] lats, double[] lons, int[] payloads) {
+        if (lats.length != lons.length || lats.length != payloads.length) {
+            throw new IllegalArgumentException("lats, lons and payloads must have the same length");
+        }
+        final int n = lats.length;
+        final long[] unsorted = new long[n];
+        GeoHashCodec.encode(lats, lons, KEY_BITS, unsorted);
+        final int[] order = sortOrder(unsorted);
+        keys = new long[n];
+        this.lats = new double[n];
+        this.lons = new double[n];
+        this.payloads = new int[n];
+        for (int i = 0; i < n; i++) {
+            final int from = order[i];
+            keys[i] = unsorted[from];
+            this.lats[i] = lats[from];
+            this.lons[i] = lons[from];
+            this.payloads[i] = payloads[from];
+        }
+    }
+
+    /**
+     * LSD radix sort of the keys as unsigned longs, one byte per pass, passes where all keys share the byte are skipped
+     * @return the positions of the keys in sorted order, equal keys keep their order
+     */
+    static int[] sortOrder(final long[] keys) {
+        final int n = keys.length;
+        int[] order = new int[n];
+        int[] buffer = new int[n];
+        for (int i = 0; i < n; i++) {
+            order[i] = i;
+        }
+        final int[] offsets = new int[257];
+        for (int shift = 0; shift < 64; shift += 8) {
+            Arrays.fill(offsets, 0);
+            for (long key : keys) {
+                ++offsets[((int) (key >>> shift) & 0xFF) + 1];
+            }
+            if (n == 0 || offsets[((int) (keys[0] >>> shift) & 0xFF) + 1] == n)
+                continue;
+            for (int i = 1; i < 257; i++) {
+                offsets[i] += offsets[i - 1];
+            }
+            for (int i = 0; i < n; i++) {
+                final int from = order[i];
+                buffer[offsets[(int) (keys[from] >>> shift) & 0xFF]++] = from;
+            }
+            final int[] tmp = order;
+            order = buffer;
+            buffer = tmp;
+        }
+        return order;
+    }
+
+    public int size() {
+        return keys.length;
+    }
+
+    public long getBits(int position) {
+        return keys[position];
+    }
+
+    public double getLatitude(int position) {
+        return lats[position];
+    }
+
+    public double getLongitude(int position) {
+        return lons[position];
+    }
+
+    public int getPayload(int position) {
+        return payloads[position];
+    }
+
+    /**
+     * @return the first position whose key is not below the key, as unsigned longs
+     */
+    int lowerBound(final long key) {
+        return lowerBound(key, 0, keys.length, i -> keys[i]);
+    }
+
+    /**
+     * the binary search shared with {@link GeoHashIndexFile}
+     * @param keyAt the key at a position, the keys in [low, high) are sorted as unsigned longs
+     * @return the first position in [low, high) whose key is not below the key, high if there is none
+     */
+    static int lowerBound(final long key, int low, int high, final IntToLongFunction keyAt) {
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (Long.compareUnsigned(keyAt.applyAsLong(mid), key) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the position of the first point in the grid of the ord or after it, the ord may be 2^precision
+     */
+    private int positionOf(final long ord, final int precision) {
+        return positionOf(ord, precision, keys.length, this::lowerBound);
+    }
+
+    /**
+     * @param size       number of keys
+     * @param lowerBound the first position whose key is not below a key
+     */
+    static int positionOf(final long ord, final int precision, final int size, final LongToIntFunction lowerBound) {
+        if (precision == 0)
+            return ord == 0 ? 0 : size;
+        if (ord == 1L << precision)
+            return size;
+        return lowerBound.applyAsInt(ord << (KEY_BITS - precision));
+    }
+
+    /**
+     * call the consumer with the position of every point in the box
+     */
+    public void forEachInBox(final BoundingBox box, final IntConsumer consumer) {
+        forEachInBox(box, keys.length, this::lowerBound, i -> lats[i], i -> lons[i], consumer);
+    }
+
+    /**
+     * the box query shared with {@link GeoHashIndexFile}: the key ranges of the box, then the exact test of their points
+     * @param lat the latitude of the point at a position, lon its longitude
+     */
+    static void forEachInBox(final BoundingBox box, final int size, final LongToIntFunction lowerBound,
+                             final IntToDoubleFunction lat, final IntToDoubleFunction lon, final IntConsumer consumer) {
+        final int precision = Math.min(62, GeoHashSearchUtil.slicePrecision(box, 62) + 4);
+        final long[] ranges = GeoHashSearchUtil.rangesFor(box, precision, BOX_RANGES);
+        for (int r = 0; r < ranges.length; r += 2) {
+            final int end = positionOf(ranges[r + 1], precision, size, lowerBound);
+            for (int i = positionOf(ranges[r], precision, size, lowerBound); i < end; i++) {
+                if (box.contains(lat.applyAsDouble(i), lon.applyAsDouble(i))) {
+                    consumer.accept(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the payloads of the points in the box, in geohash order
+     */
+    public int[] queryBox(final BoundingBox box) {
+        final PayloadCollector collector = new PayloadCollector();
+        forEachInBox(box, collector);
+        return collector.toArray();
+    }
+
+    /**
+     * call the consumer with the position of every point within meters of the center, see {@link GeoCircle}
+     */
+    public void forEachInRadius(final WGS84Point center, final double meters, final IntConsumer consumer) {
+        final GeoCircle circle = new GeoCircle(center, meters);
+        final int precision = GeoHashSearchUtil.coverPrecision(circle, CIRCLE_CELLS);
+        final Pairs<List<GeoHash>, List<GeoHash>> cover = GeoHashSearchUtil.coverClassified(circle, CIRCLE_CELLS, precision);
+        final long[] interior = GeoHashSearchUtil.rangesOf(cover.fst, precision);
+        for (int r = 0; r < interior.length; r += 2) {
+            final int end = positionOf(interior[r + 1], precision);
+            for (int i = positionOf(interior[r], precision); i < end; i++) {
+                consumer.accept(i);
+            }
+        }
+        final long[] boundary = GeoHashSearchUtil.rangesOf(cover.snd, precision);
+        for (int r = 0; r < boundary.length; r += 2) {
+            final int end = positionOf(boundary[r + 1], precision);
+            for (int i = positionOf(boundary[r], precision); i < end; i++) {
+                if (circle.contains(lats[i], lons[i])) {
+                    consumer.accept(i);
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the payloads of the points within meters of the center, interior grids first
+     */
+    public int[] queryRadius(final WGS84Point center, final double meters) {
+        final PayloadCollector collector = new PayloadCollector();
+        forEachInRadius(center, meters, collector);
+        return collector.toArray();
+    }
+
+    /**
+     * the payloads of the k points nearest to the center by {@link VincentyGeodesy#distanceInMeters}, nearest first.<br>
+     * the grids around the center are visited ring by ring like {@link GeoHashNavIterator}, at the finest precision
+     * whose grid of the center still holds k points. the k best so far are kept in a max heap, a point is only
+     * measured with Vincenty if its spherical lower bound can beat the k-th best, and the search stops once the
+     * nearest point of the next ring, outside the box of the rings so far, can not.
+     */
+    public int[] nearest(final WGS84Point center, final int k) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k must not be negative");
+        }
+        final int found = Math.min(k, keys.length);
+        final int[] heapPositions = new int[found];
+        final double[] heapDistances = new double[found];
+        if (found == 0)
+            return new int[0];
+        final long centerBits = GeoHashCodec.encode(center.latitude, center.longitude, KEY_BITS);
+        int precision = NEAREST_MAX_BITS;
+        while (precision > 0 && countInGrid(centerBits, precision) < found) {
+            precision -= 2;
+        }
+        final int lenY = precision >>> 1;
+        final int lenX = precision - lenY;
+        final long latGrids = 1L << lenY, lonGrids = 1L << lenX;
+        final long centerLat = GeoHashCodec.decodeLatBits(centerBits, precision);
+        final long centerLon = GeoHashCodec.decodeLonBits(centerBits, precision);
+        final double latDelta = GeoHash.D180 / latGrids, lonDelta = GeoHash.D360 / lonGrids;
+        final double sinLat = Math.sin(center.latitude * VincentyGeodesy.degToRad);
+        final double cosLat = Math.cos(center.latitude * VincentyGeodesy.degToRad);
+
+        int size = 0;
+        for (long radius = 0; ; radius++) {
+            //rows of the ring, then its west and east sides, no grid twice once the rings wrap around the world
+            for (long dy = -radius; dy <= radius; dy++) {
+                final long lat = centerLat + dy;
+                if (lat < 0 || lat >= latGrids)
+                    continue;
+                final boolean row = dy == -radius || dy == radius;
+                for (long dx = -radius; dx <= radius && dx < lonGrids - radius; dx += row ? 1 : 2 * radius) {
+                    //the rows of the last ring already took every lane
+                    if (!row && dx == -radius && 2 * radius - 1 >= lonGrids)
+                        continue;
+                    final long lon = Math.floorMod(centerLon + dx, lonGrids);
+                    final long ord = precision == 0 ? 0 : GeoHash.interleave(lat, lon, lenX, lenY) >>> (64 - precision);
+                    final int end = positionOf(ord + 1, precision);
+                    for (int i = positionOf(ord, precision); i < end; i++) {
+                        final double bound = sphereLowerBound(sinLat, cosLat, center.longitude, lats[i], lons[i]);
+                        if (size == found && bound >= heapDistances[0])
+                            continue;
+                        double distance = VincentyGeodesy.distanceInMeters(center, WGS84Point.Create(lats[i], lons[i]));
+                        if (Double.isNaN(distance))//nearly antipodal
+                            distance = bound;
+                        if (size < found) {
+                            siftUp(heapPositions, heapDistances, size++, i, distance);
+                        } else if (distance < heapDistances[0]) {
+                            siftDown(heapPositions, heapDistances, size, i, distance);
+                        }
+                    }
+                }
+            }
+            final boolean allLat = centerLat - radius <= 0 && centerLat + radius >= latGrids - 1;
+            if (allLat && 2 * radius + 1 >= lonGrids)
+                break;
+            if (size == found) {
+                //points of later rings are outside the box of the rings so far
+                final double north = centerLat + radius >= latGrids - 1 ? Double.POSITIVE_INFINITY
+                        : ((centerLat + radius + 1) * latDelta - GeoHash.D90 - center.latitude) * VincentyGeodesy.degToRad * MIN_RADIUS;
+                final double south = centerLat - radius <= 0 ? Double.POSITIVE_INFINITY
+                        : (center.latitude - ((centerLat - radius) * latDelta - GeoHash.D90)) * VincentyGeodesy.degToRad * MIN_RADIUS;
+                double lonBound = Double.POSITIVE_INFINITY;
+                if (2 * radius + 1 < lonGrids) {
+                    final double east = (centerLon + radius + 1) * lonDelta - GeoHash.D180 - center.longitude;
+                    final double west = center.longitude - ((centerLon - radius) * lonDelta - GeoHash.D180);
+                    lonBound = meridianLowerBound(cosLat, Math.min(east, west));
+                }
+                if (Math.min(Math.min(north, south), lonBound) * BOUND_SLACK >= heapDistances[0])
+                    break;
+            }
+        }
+        //heap sort, the farthest goes last
+        for (int last = size - 1; last > 0; last--) {
+            final int position = heapPositions[0];
+            final double distance = heapDistances[0];
+            siftDown(heapPositions, heapDistances, last, heapPositions[last], heapDistances[last]);
+            heapPositions[last] = position;
+            heapDistances[last] = distance;
+        }
+        final int[] r = new int[size];
+        for (int i = 0; i < size; i++) {
+            r[i] = payloads[heapPositions[i]];
+        }
+        return r;
+    }
+
+    private int countInGrid(final long bits, final int precision) {
+        final long ord = precision == 0 ? 0 : bits >>> (64 - precision);
+        return positionOf(ord + 1, precision) - positionOf(ord, precision);
+    }
+
+    /**
+     * central angle on the sphere times the smallest radius of curvature of the ellipsoid, slightly below the geodesic
+     */
+    private static double sphereLowerBound(double sinLat, double cosLat, double lon, double lat2, double lon2) {
+        final double phi2 = lat2 * VincentyGeodesy.degToRad;
+        final double cos = sinLat * Math.sin(phi2) + cosLat * Math.cos(phi2) * Math.cos((lon2 - lon) * VincentyGeodesy.degToRad);
+        return Math.acos(Math.max(-1, Math.min(1, cos))) * MIN_RADIUS * BOUND_SLACK;
+    }
+
+    /**
+     * lower bound of the distance to points at least deltaLon degree east or west:
+     * the distance to the great circle of that meridian, or to the nearer pole beyond 90 degree
+     */
+    private static double meridianLowerBound(double cosLat, double deltaLon) {
+        if (deltaLon >= 90)
+            return (Math.PI / 2 - Math.acos(Math.min(1, cosLat))) * MIN_RADIUS;
+        return Math.asin(Math.min(1, cosLat * Math.sin(deltaLon * VincentyGeodesy.degToRad))) * MIN_RADIUS;
+    }
+
+    private static void siftUp(int[] positions, double[] distances, int index, int position, double distance) {
+        while (index > 0) {
+            final int parent = (index - 1) >>> 1;
+            if (distances[parent] >= distance)
+                break;
+            positions[index] = positions[parent];
+            distances[index] = distances[parent];
+            index = parent;
+        }
+        positions[index] = position;
+        distances[index] = distance;
+    }
+
+    /**
+     * replace the root of the heap of size entries
+     */
+    private static void siftDown(int[] positions, double[] distances, int size, int position, double distance) {
+        int index = 0;
+        while (true) {
+            int child = (index << 1) + 1;
+            if (child >= size)
+                break;
+            if (child + 1 < size && distances[child + 1] > distances[child])
+                ++child;
+            if (distances[child] <= distance)
+                break;
+            positions[index] = positions[child];
+            distances[index] = distances[child];
+            index = child;
+        }
+        positions[index] = position;
+        distances[index] = distance;
+    }
+
+    private final class PayloadCollector implements IntConsumer {
+        private int[] found = new int[16];
+        private int count;
+
+        @Override
+        public void accept(int position) {
+            if (count == found.length) {
+                found = Arrays.copyOf(found, count << 1);
+            }
+            found[count++] = payloads[position];
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(found, count);
+        }
+    }
+}
@@ -3,11 +3,14 @@ package geohashutil.asiainfo.com;
 
 import com.asiainfo.cem.common.utils.Pairs;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
 
 public class GeoHashSearchUtil {
-    private static final int MAX_LEVEL = 40;//40位GeoHash精度约为20米
+    static final int MAX_LEVEL = 40;//40位GeoHash精度约为20米
 //    private static final byte[] maskPosIndex;
     public static final double LOG2BASE = Math.log(2);
     public static final double LOG180D = Math.log(180);
@@ -50,13 +53,22 @@ public class GeoHashSearchUtil {
     }
 
     public static Pairs<GeoHash,GeoHash> leastBoundingGeoGrid(BoundingBox box){
-        GeoHash leftTop = box.getUpperLeftHash(MAX_LEVEL);
-        GeoHash rightBottom = box.getLowerRightHash(MAX_LEVEL);
+        return leastBoundingGeoGrid(box, MAX_LEVEL);
+    }
+
+    /**
+     * @param level precision of the corners the least bounding grids are searched from, the grids are not finer
+     */
+    public static Pairs<GeoHash,GeoHash> leastBoundingGeoGrid(BoundingBox box, int level){
+        GeoHash leftTop = box.getUpperLeftHash(level);
+        GeoHash rightBottom = box.getLowerRightHash(level);
         return leastBoundingGeoGrid(leftTop, rightBottom);
     }
 
     public static Pairs<GeoHash, GeoHash> leastBoundingGeoGrid(GeoHash leftTop, GeoHash rightBottom) {
         byte prefixIndex = comparePrefix(leftTop.bits,rightBottom.bits);
+        if (prefixIndex == 0)//both corners in one grid
+            return new Pairs<>(leftTop,null);
         byte prefixAdjust;
         if (prefixIndex%2 == 0){
             if (prefixIndex >= 2){
@@ -75,24 +87,88 @@ public class GeoHashSearchUtil {
         return new Pairs<>(leftTop.fromPrefix(prefixIndex),rightBottom.fromPrefix(prefixIndex));
     }
 
-    public static List<GeoHash> leastBoundingSlice(final BoundingBox box,final int maxLen){
-        final double centerLat = (box.minLat + box.maxLat) / 2;
-        final double centerLon = (box.minLon + box.maxLon) / 2;
+    /**
+     * @return the precision of the slices of the box, at which the box spans at most about 3 grids along each lane
+     */
+    static int slicePrecision(final BoundingBox box, final int maxLen){
         final double halfX = box.getLongitudeSize() /2;
         final double halfY = box.getLatitudeSize() /2;
-        final int kx = (int) (Math.floor((LOG360D - Math.log(halfX))/LOG2BASE));
-        final int ky = (int) (Math.floor((LOG180D - Math.log(halfY))/LOG2BASE));
-        final int k;
+        //a box of a single point has no size, 64 keeps kx+ky from overflowing
+        final int kx = (int) Math.min(64, Math.floor((LOG360D - Math.log(halfX))/LOG2BASE));
+        final int ky = (int) Math.min(64, Math.floor((LOG180D - Math.log(halfY))/LOG2BASE));
         if (kx == ky || kx == ky+1){
-            k = Math.min(maxLen,kx+ky);
+            return Math.min(maxLen,kx+ky);
         }else if (kx < ky){
-            k = Math.min(maxLen,kx*2);
+            return Math.min(maxLen,kx*2);
         }else {
             // kx > ky +1
-            k = Math.min(maxLen,ky*2+1);
+            return Math.min(maxLen,ky*2+1);
         }
-        GeoHash lbg = GeoHash.withBitPrecision(centerLat-halfY,centerLon-halfX,k);
-        GeoHash rtg = GeoHash.withBitPrecision(centerLat+halfY,centerLon+halfX,k);
+    }
+
+    public static List<GeoHash> leastBoundingSlice(final BoundingBox box,final int maxLen){
+        final int k = slicePrecision(box, maxLen);
+        GeoHash lbg = GeoHash.fromLongValue(lowerLeftBits(box, k), (byte) k);
+        GeoHash rtg = GeoHash.fromLongValue(upperRightBits(box, k), (byte) k);
+        return slices(lbg, rtg);
+    }
+
+    /**
+     * bits of the lower left corner of the box as the slices see it: center - half size, which may differ
+     * from box.minLat, box.minLon by an ulp, enough to fall into the next grid on the edge of a grid
+     */
+    static long lowerLeftBits(final BoundingBox box, final int precision){
+        final double centerLat = (box.minLat + box.maxLat) / 2;
+        final double centerLon = (box.minLon + box.maxLon) / 2;
+        return GeoHashCodec.encode(centerLat - box.getLatitudeSize() / 2, centerLon - box.getLongitudeSize() / 2, precision);
+    }
+
+    /**
+     * bits of the upper right corner of the box as the slices see it, see {@link #lowerLeftBits(BoundingBox, int)}
+     */
+    static long upperRightBits(final BoundingBox box, final int precision){
+        final double centerLat = (box.minLat + box.maxLat) / 2;
+        final double centerLon = (box.minLon + box.maxLon) / 2;
+        return GeoHashCodec.encode(centerLat + box.getLatitudeSize() / 2, centerLon + box.getLongitudeSize() / 2, precision);
+    }
+
+    /**
+     * the slices of the box at maxLen bits, or at the finest precision below at which the box takes
+     * at most maxCells slices, so a fine maxLen on a large box can not exhaust the heap.
+     * @param maxLen   in [0,64]
+     * @param maxCells at least 1, a single slice of 0 bits covers the world
+     */
+    public static BoundingSlice leastBoundingSlice(final BoundingBox box, final int maxLen, final int maxCells){
+        if (maxLen < 0 || maxLen > 64) {
+            throw new IllegalArgumentException("maxLen must be in [0,64]");
+        }
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("maxCells must be positive");
+        }
+        int k = maxLen;
+        long lbg, rtg, lonCount, latCount;
+        //counting needs no GeoHash, one bit less about halves the slices
+        while (true) {
+            lbg = lowerLeftBits(box, k);
+            rtg = upperRightBits(box, k);
+            lonCount = GeoHashCodec.decodeLonBits(rtg, k) - GeoHashCodec.decodeLonBits(lbg, k) + 1;
+            latCount = GeoHashCodec.decodeLatBits(rtg, k) - GeoHashCodec.decodeLatBits(lbg, k) + 1;
+            //both counts fit in an int before they are multiplied, up to 2^32 each at 64 bits
+            if (lonCount <= maxCells && latCount <= maxCells && lonCount * latCount <= maxCells || k == 0)
+                break;
+            --k;
+        }
+        final GeoHash first = GeoHash.fromLongValue(lbg, (byte) k);
+        final List<GeoHash> slices = slices(first, GeoHash.fromLongValue(rtg, (byte) k));
+        final double coverArea = lonCount * first.getLonDelta() * latCount * first.getLatDelta();
+        return new BoundingSlice(slices, k, (int) lonCount, (int) latCount,
+                box.getLongitudeSize() * box.getLatitudeSize(), coverArea);
+    }
+
+    /**
+     * all grids of the rectangle from the lower left grid to the upper right one, column by column
+     */
+    private static List<GeoHash> slices(final GeoHash lbg, final GeoHash rtg){
         //matrix: (maxX - minX+1) * (maxY - minY+1)
         int N = (int) (rtg.lonBits - lbg.lonBits + 1);
         int M = (int) (rtg.latBits - lbg.latBits + 1);
@@ -116,103 +192,437 @@ public class GeoHashSearchUtil {
         return result;
     }
 
-    public static List<GeoHash> leastBoundingSliceMerged(final BoundingBox box,final int maxLen){
-        return mergeSlices(leastBoundingSlice(box,maxLen));
+    /**
+     * all grids of the precision intersecting the box, for boxes much larger than the grids, sorted in Z-order.<br>
+     * the walk of the box is split at aligned geohash prefixes, i.e. into quadrants of the coarsest level
+     * the box spans, down to parts of about {@link SliceTask#THRESHOLD} grids, which are walked independently.
+     * the parts are joined in Z-order, the grids are copied once into the result.
+     * @param precision in [0,62]
+     */
+    public static List<GeoHash> sliceParallel(final BoundingBox box, final int precision, final ForkJoinPool pool){
+        final List<List<GeoHash>> parts = pool.invoke(new SliceTask(box.navigate(precision)));
+        int size = 0;
+        for (List<GeoHash> part : parts) {
+            size += part.size();
+        }
+        final List<GeoHash> result = new ArrayList<>(size);
+        for (List<GeoHash> part : parts) {
+            result.addAll(part);
+        }
+        return result;
     }
 
-    private static List<GeoHash> mergeSlices(List<GeoHash> slices){
-        final GeoHash lbg = slices.get(0);
-        final GeoHash rtg = slices.get(slices.size()-1);
-        final long maxY = rtg.latBits;
-        final long minY = lbg.latBits;
-        final long minX = lbg.lonBits;
-        final long maxX =rtg.lonBits;
-        final int N = (int) (maxX - minX + 1);
-        final int M = (int) (maxY - minY + 1);
-        final boolean isEvenLen = lbg.significantBits % 2 == 0;
+    private static final class SliceTask extends RecursiveTask<List<List<GeoHash>>> {
+        private static final long serialVersionUID = -5027541384716453361L;
+        private static final int THRESHOLD = 1 << 12;
+        private final BoundingBoxNavIterator it;
 
-        int mergedCount = 0;
-        //matrix: (maxX - minX+1) * (maxY - minY+1)
-        GeoHash[][] tmp;
-        if (isEvenLen){
-            tmp = new GeoHash[M][];
-            for (int y = 0; y < M; ++y) {
-                GeoHash[] row = new GeoHash[N];
-                tmp[y] = row;
-                for (int x = 0,count=y; x < N; ++x,count+=M) {
-                    row[x] = slices.get(count);//count == x*M+y
+        SliceTask(BoundingBoxNavIterator it) {
+            this.it = it;
+        }
+
+        @Override
+        protected List<List<GeoHash>> compute() {
+            //a failed split still drops the empty end of the walk, so the estimate shrinks every time
+            while (it.estimateSize() > THRESHOLD) {
+                final BoundingBoxNavIterator lower = it.trySplit();
+                if (lower != null) {
+                    final SliceTask lowerTask = new SliceTask(lower);
+                    lowerTask.fork();
+                    final List<List<GeoHash>> upper = compute();
+                    final List<List<GeoHash>> parts = lowerTask.join();
+                    parts.addAll(upper);
+                    return parts;
                 }
             }
-            for (int y = 1; y < M; y++) {
-                GeoHash[] row = tmp[y];
-                GeoHash[] underRow = tmp[y - 1];
-                for (int x = 0; x < N; ++x) {
-                    //check merged along y-axis when geohash length is even
-                    if (canMergedAlongYAxis(underRow[x],row[x])){
-                        underRow[x]=row[x]=row[x].dropSignificantBits(1);
-                        ++mergedCount;
-                        //check merged along x-axis when y-axis is merged
-                        if (x>0 && canMergedAlongXAxis(row[x-1],row[x])){
-                            GeoHash merged = row[x].dropSignificantBits(1);
-                            row[x-1]=row[x]=merged;
-                            underRow[x-1]= underRow[x]=merged;
-                            ++mergedCount;
-                        }
-                    }
+            final List<GeoHash> part = new ArrayList<>((int) Math.min(THRESHOLD, it.estimateSize()));
+            while (it.hasNext()) {
+                part.add(it.next());
+            }
+            final List<List<GeoHash>> parts = new ArrayList<>();
+            parts.add(part);
+            return parts;
+        }
+    }
+
+    public static List<GeoHash> leastBoundingSliceMerged(final BoundingBox box,final int maxLen){
+        final int k = slicePrecision(box, maxLen);
+        return mergeSlices(lowerLeftBits(box, k), upperRightBits(box, k), k);
+    }
+
+    /**
+     * decompose the box into ranges of {@link GeoHash#ord()} at the given precision, for key range scans.<br>
+     * the grids of the box are walked in Z-order by aligned blocks, BIGMIN jumps over the gaps,
+     * then the smallest gaps are filled until at most maxRanges ranges are left:
+     * the filled gaps are grids outside the box, i.e. false positives, traded for fewer scans.
+     * @param maxRanges at least 1, Integer.MAX_VALUE to keep the exact ranges
+     * @return sorted, disjoint, not adjacent [start, end) pairs: {start0, end0, start1, end1, ...}
+     */
+    public static long[] rangesFor(final BoundingBox box, final int precision, final int maxRanges) {
+        if (precision < 0 || precision > 62) {
+            throw new IllegalArgumentException("precision must be in [0,62]");
+        }
+        if (maxRanges < 1) {
+            throw new IllegalArgumentException("maxRanges must be positive");
+        }
+        final long lbg = lowerLeftBits(box, precision);
+        final long rtg = upperRightBits(box, precision);
+        final long minLat = GeoHashCodec.decodeLatBits(lbg, precision), maxLat = GeoHashCodec.decodeLatBits(rtg, precision);
+        final long minLon = GeoHashCodec.decodeLonBits(lbg, precision), maxLon = GeoHashCodec.decodeLonBits(rtg, precision);
+        final int shift = 64 - precision;
+        final long zMin = precision == 0 ? 0 : lbg >>> shift;
+        final long zMax = precision == 0 ? 0 : rtg >>> shift;
+
+        long[] ranges = new long[16];
+        int count = 0;
+        long z = zMin;
+        long start = z;
+        while (true) {
+            //the largest aligned block starting at z inside the box
+            int k = Math.min(Long.numberOfTrailingZeros(z), precision);
+            while (k > 0 && !ordInRect(z + (1L << k) - 1, precision, minLat, maxLat, minLon, maxLon)) {
+                --k;
+            }
+            final long end = z + (1L << k);
+            if (end > zMax) {
+                ranges = appendRange(ranges, count++, start, end);
+                break;
+            }
+            if (ordInRect(end, precision, minLat, maxLat, minLon, maxLon)) {
+                z = end;
+            } else {
+                ranges = appendRange(ranges, count++, start, end);
+                z = start = bigMin(end, zMin, zMax, precision);
+            }
+        }
+        if (count > maxRanges) {
+            count = coalesceRanges(ranges, count, maxRanges);
+        }
+        return java.util.Arrays.copyOf(ranges, count << 1);
+    }
+
+    /**
+     * the key ranges of a cover of mixed precision, grids adjacent in Z-order share one range
+     * @param cells     sorted and disjoint, none finer than precision
+     * @param precision in [0,62], the precision of the ords of the ranges
+     * @return [start, end) pairs like {@link #rangesFor(BoundingBox, int, int)}
+     */
+    public static long[] rangesOf(final List<GeoHash> cells, final int precision) {
+        if (precision < 0 || precision > 62) {
+            throw new IllegalArgumentException("precision must be in [0,62]");
+        }
+        long[] ranges = new long[16];
+        int count = 0;
+        for (GeoHash cell : cells) {
+            final int shift = precision - cell.significantBits;
+            if (shift < 0) {
+                throw new IllegalArgumentException("cell " + cell + " is finer than " + precision + " bits");
+            }
+            final long ord = cell.significantBits == 0 ? 0 : cell.ord();
+            final long start = ord << shift;
+            final long end = (ord + 1) << shift;
+            if (count > 0 && ranges[(count << 1) - 1] == start) {
+                ranges[(count << 1) - 1] = end;
+            } else {
+                ranges = appendRange(ranges, count++, start, end);
+            }
+        }
+        return java.util.Arrays.copyOf(ranges, count << 1);
+    }
+
+    private static long[] appendRange(long[] ranges, int index, long start, long end) {
+        if ((index << 1) == ranges.length) {
+            ranges = java.util.Arrays.copyOf(ranges, ranges.length << 1);
+        }
+        ranges[index << 1] = start;
+        ranges[(index << 1) + 1] = end;
+        return ranges;
+    }
+
+    /**
+     * fill the (count - maxRanges) smallest gaps in place
+     * @return maxRanges
+     */
+    private static int coalesceRanges(long[] ranges, int count, int maxRanges) {
+        final long[] gaps = new long[count - 1];
+        for (int i = 0; i < gaps.length; i++) {
+            gaps[i] = ranges[(i + 1) << 1] - ranges[(i << 1) + 1];
+        }
+        final long[] sorted = gaps.clone();
+        java.util.Arrays.sort(sorted);
+        int toFill = count - maxRanges;
+        final long threshold = sorted[toFill - 1];
+        int equalToFill = toFill;
+        for (int i = 0; i < toFill; i++) {
+            if (sorted[i] < threshold)
+                --equalToFill;
+        }
+        int merged = 0;
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                final long gap = gaps[i - 1];
+                if (gap < threshold || (gap == threshold && equalToFill-- > 0)) {
+                    ranges[(merged << 1) - 1] = ranges[(i << 1) + 1];
+                    continue;
                 }
             }
-        }else{
-            tmp = new GeoHash[N][];
-            for (int x = 0,count=0; x < N; ++x) {
-                GeoHash[] col = new GeoHash[M];
-                tmp[x] = col;
-                for (int y = 0; y < M; ++y,++count) {
-                    col[y] = slices.get(count);
+            ranges[merged << 1] = ranges[i << 1];
+            ranges[(merged << 1) + 1] = ranges[(i << 1) + 1];
+            ++merged;
+        }
+        return merged;
+    }
+
+    /**
+     * cover the shape with grids of mixed precision, at most maxCells of them and none finer than maxPrecision.<br>
+     * starts from the {@link #leastBoundingGeoGrid(BoundingBox)} of the shape's box and splits the coarsest grids
+     * first, one bit at a time: children disjoint from the shape are dropped, children inside it are kept as they
+     * are, the others are split again as long as the budget allows.
+     * @param maxCells     at least 1
+     * @param maxPrecision in [0,64]
+     * @return sorted disjoint grids, every one intersects the shape and together they contain it
+     */
+    public static List<GeoHash> cover(final GeoShape shape, final int maxCells, final int maxPrecision) {
+        List<GeoHash> interior = new ArrayList<>();
+        List<GeoHash> boundary = new ArrayList<>();
+        cover(shape, maxCells, maxPrecision, interior, boundary);
+        interior.addAll(boundary);
+        interior.sort(null);
+        return interior;
+    }
+
+    /**
+     * cover the points within meters of the center, see {@link GeoCircle} and {@link #cover(GeoShape, int, int)}.<br>
+     * the grids are not finer than the precision of the slices of the circle's box
+     * plus enough levels to spend maxCells along the circle, only grids intersecting the circle are kept.
+     */
+    public static List<GeoHash> coverCircle(final WGS84Point center, final double meters, final int maxCells) {
+        final GeoCircle circle = new GeoCircle(center, meters);
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("maxCells must be positive");
+        }
+        return cover(circle, maxCells, coverPrecision(circle, maxCells));
+    }
+
+    /**
+     * @return the finest precision worth spending maxCells on the border of a round shape, at most 62
+     */
+    static int coverPrecision(final GeoShape shape, final int maxCells) {
+        //the border crosses about 4*2^j grids j levels of each lane finer than the slices
+        final int extraLevels = 2 * (32 - Integer.numberOfLeadingZeros(Math.max(1, maxCells >>> 2)));
+        return Math.min(62, slicePrecision(shape.getBoundingBox(), 62) + extraLevels);
+    }
+
+    /**
+     * same as {@link #cover(GeoShape, int, int)}, with the grids inside the shape apart from the others:
+     * points in the grids of fst need no exact test against the shape, only those in the grids of snd.
+     * @return fst: sorted grids inside the shape, snd: sorted grids crossing its border
+     */
+    public static Pairs<List<GeoHash>, List<GeoHash>> coverClassified(final GeoShape shape, final int maxCells, final int maxPrecision) {
+        List<GeoHash> interior = new ArrayList<>();
+        List<GeoHash> boundary = new ArrayList<>();
+        cover(shape, maxCells, maxPrecision, interior, boundary);
+        interior.sort(null);
+        boundary.sort(null);
+        return new Pairs<>(interior, boundary);
+    }
+
+    /**
+     * tag the grids of any cover, e.g. {@link #leastBoundingSliceMerged(BoundingBox, int)} of a box,
+     * by their bounding box against the shape; grids disjoint from the shape are dropped.
+     * @return fst: grids inside the shape, snd: grids crossing its border, both in the order of cells
+     */
+    public static Pairs<List<GeoHash>, List<GeoHash>> classify(final List<GeoHash> cells, final GeoShape shape) {
+        List<GeoHash> interior = new ArrayList<>();
+        List<GeoHash> boundary = new ArrayList<>();
+        for (GeoHash cell : cells) {
+            final BoundingBox cellBox = cell.getBoundingBox();
+            if (shape.contains(cellBox)) {
+                interior.add(cell);
+            } else if (shape.intersects(cellBox)) {
+                boundary.add(cell);
+            }
+        }
+        return new Pairs<>(interior, boundary);
+    }
+
+    /**
+     * @param interior grids inside the shape are added here
+     * @param boundary grids crossing the border of the shape are added here
+     */
+    static void cover(final GeoShape shape, final int maxCells, final int maxPrecision,
+                      final List<GeoHash> interior, final List<GeoHash> boundary) {
+        if (maxCells < 1) {
+            throw new IllegalArgumentException("maxCells must be positive");
+        }
+        if (maxPrecision < 0 || maxPrecision > 64) {
+            throw new IllegalArgumentException("maxPrecision must be in [0,64]");
+        }
+        //the seeds share a parent, which is the only seed if there are two of them
+        final Pairs<GeoHash, GeoHash> seeds = leastBoundingGeoGrid(shape.getBoundingBox(), Math.min(MAX_LEVEL, maxPrecision));
+        GeoHash root = seeds.fst;
+        if (seeds.snd != null) {
+            root = ancestor(root, 64 - comparePrefix(root.bits, seeds.snd.bits));
+        }
+        if (shape.contains(root.getBoundingBox())) {
+            interior.add(root);
+            return;
+        }
+        //grids of the queue are split in order of precision, the coarsest first
+        final ArrayDeque<GeoHash> queue = new ArrayDeque<>();
+        queue.add(root);
+        int count = 1;
+        while (!queue.isEmpty()) {
+            final GeoHash cell = queue.poll();
+            final int sig = cell.significantBits;
+            if (sig >= maxPrecision) {
+                boundary.add(cell);
+                continue;
+            }
+            final GeoHash low = GeoHash.fromLongValue(cell.bits, (byte) (sig + 1));
+            final GeoHash high = GeoHash.fromLongValue(cell.bits | (1L << (63 - sig)), (byte) (sig + 1));
+            final BoundingBox lowBox = low.getBoundingBox();
+            final BoundingBox highBox = high.getBoundingBox();
+            final boolean lowIn = shape.intersects(lowBox);
+            final boolean highIn = shape.intersects(highBox);
+            final int added = (lowIn ? 1 : 0) + (highIn ? 1 : 0) - 1;
+            if (count + added > maxCells) {
+                boundary.add(cell);
+                continue;
+            }
+            count += added;
+            if (lowIn) {
+                if (shape.contains(lowBox)) {
+                    interior.add(low);
+                } else {
+                    queue.add(low);
                 }
             }
-            for (int x = 1; x < N; ++x) {
-                GeoHash[] col = tmp[x];
-                GeoHash[] leftCol = tmp[x-1];
-                for (int y = 0; y < M; ++y) {
-                    //check merged along x-axis when geohash length is odd
-                    if (canMergedAlongXAxis(leftCol[y],col[y])){
-                        leftCol[y]=col[y]=col[y].dropSignificantBits(1);
-                        ++mergedCount;
-                        //check merged along y-axis when x-axis is merged
-                        if (y>0 && canMergedAlongYAxis(col[y-1],col[y])){
-                            GeoHash merged = col[y].dropSignificantBits(1);
-                            col[y-1]=col[y]=merged;
-                            leftCol[y-1]= leftCol[y]=merged;
-                            ++mergedCount;
-                        }
-                    }
+            if (highIn) {
+                if (shape.contains(highBox)) {
+                    interior.add(high);
+                } else {
+                    queue.add(high);
                 }
             }
         }
-        List<GeoHash> mergedSlices = removeDuplicates(tmp,slices.size() - mergedCount);
-//        if (mergedSlices.size() + mergedCount != slices.size()){
-//            throw new RuntimeException("bug");
-//        }
+    }
+
+    private static GeoHash ancestor(GeoHash hash, int significantBits) {
+        final long mask = significantBits == 0 ? 0 : -1L << (64 - significantBits);
+        return GeoHash.fromLongValue(hash.bits & mask, (byte) significantBits);
+    }
+
+    /**
+     * bottom-up merge of the slices, which are all grids of the rectangle between the lower left and the upper right
+     * grid: the grids are visited in Z-order (geohash order), two grids with the same parent always follow each other,
+     * so a stack collapses every complete pair into its parent, level after level.<br>
+     * O(n) and the result is the smallest cover mixing precisions, sorted in Z-order. the slices themselves
+     * are never built, the walk only needs the bits of the corners.
+     */
+    private static List<GeoHash> mergeSlices(final long lbg, final long rtg, final int precision){
+        //the merged cells never outnumber the slices
+        final int grids = (int) gridCount(lbg, rtg, precision);
+        final long[] ords = new long[grids];
+        final byte[] lens = new byte[grids];
+        final int top = mergeRect(lbg, rtg, precision, ords, lens);
+        List<GeoHash> mergedSlices = new ArrayList<>(top);
+        for (int i = 0; i < top; i++) {
+            mergedSlices.add(GeoHash.fromOrd(ords[i], lens[i]));
+        }
         return mergedSlices;
     }
 
-    private static List<GeoHash> removeDuplicates(GeoHash[][] tmp, int cap) {
-        List<GeoHash> result = new ArrayList<>(cap);
-        for (GeoHash[] r : tmp) {
-            for (GeoHash item : r) {
-                if (!result.contains(item)){
-                    result.add(item);
-                }
+    /**
+     * @return number of grids of the rectangle from the lower left grid to the upper right one
+     */
+    static long gridCount(final long lbg, final long rtg, final int precision){
+        final long lonCount = GeoHashCodec.decodeLonBits(rtg, precision) - GeoHashCodec.decodeLonBits(lbg, precision) + 1;
+        final long latCount = GeoHashCodec.decodeLatBits(rtg, precision) - GeoHashCodec.decodeLatBits(lbg, precision) + 1;
+        return lonCount * latCount;
+    }
+
+    /**
+     * merge the grids of the rectangle from the lower left grid to the upper right one,
+     * see {@link #mergeSlices(long, long, int)}
+     * @param lbg  bits of the lower left grid
+     * @param rtg  bits of the upper right grid
+     * @param ords the ords of the merged cells are written here, at least as many as the grids of the rectangle
+     * @param lens the precisions of the merged cells are written here
+     * @return number of merged cells
+     */
+    static int mergeRect(final long lbg, final long rtg, final int precision, final long[] ords, final byte[] lens){
+        final long minLat = GeoHashCodec.decodeLatBits(lbg, precision), maxLat = GeoHashCodec.decodeLatBits(rtg, precision);
+        final long minLon = GeoHashCodec.decodeLonBits(lbg, precision), maxLon = GeoHashCodec.decodeLonBits(rtg, precision);
+        final long zMin = precision == 0 ? 0 : lbg >>> (64 - precision);
+        final long zMax = precision == 0 ? 0 : rtg >>> (64 - precision);
+
+        int top = 0;
+        long z = zMin;
+        while (true) {
+            long ord = z;
+            byte len = (byte) precision;
+            //the right sibling completes the pair with the left one on top of the stack
+            while (top > 0 && (ord & 1) == 1 && lens[top-1] == len && ords[top-1] == (ord ^ 1)) {
+                ord >>>= 1;
+                --len;
+                --top;
             }
+            ords[top] = ord;
+            lens[top] = len;
+            ++top;
+            if (z == zMax)
+                break;
+            ++z;
+            if (!ordInRect(z, precision, minLat, maxLat, minLon, maxLon))
+                z = bigMin(z, zMin, zMax, precision);
         }
-        return result;
+        return top;
+    }
+
+    /**
+     * @return the bits of an ord of the given precision that belong to longitude, the highest one is longitude
+     */
+    static long lonOrdMask(int precision) {
+        final long mask = (precision & 1) == 0 ? GeoHash.EvenBitMask : GeoHash.OddBitMask;
+        return precision == 64 ? mask : mask & ~(-1L << precision);
     }
 
-    private static boolean canMergedAlongXAxis(GeoHash a, GeoHash b){
-        return a.significantBits == b.significantBits && (a.lonBits ^ b.lonBits) == 1;
+    static boolean ordInRect(long ord, int precision, long minLat, long maxLat, long minLon, long maxLon) {
+        final long bits = ord << (64 - precision);
+        final long lat = GeoHashCodec.decodeLatBits(bits, precision);
+        final long lon = GeoHashCodec.decodeLonBits(bits, precision);
+        return lat >= minLat && lat <= maxLat && lon >= minLon && lon <= maxLon;
     }
 
-    private static boolean canMergedAlongYAxis(GeoHash a, GeoHash b){
-        return a.significantBits == b.significantBits && (a.latBits ^ b.latBits) == 1;
+    /**
+     * BIGMIN of Tropf and Herzog: the smallest ord in Z-order after z that is inside the rectangle
+     * whose lower left grid is zMin and upper right grid is zMax, z must be outside the rectangle and before zMax.
+     */
+    static long bigMin(long z, long zMin, long zMax, int precision) {
+        final long lonMask = lonOrdMask(precision);
+        long bigMin = zMax;
+        for (int i = precision - 1; i >= 0; i--) {
+            final long bit = 1L << i;
+            //the lower bits of the same lane as bit
+            final long laneMask = ((lonMask & bit) != 0 ? lonMask : ~lonMask) & (bit - 1);
+            final int pattern = ((z & bit) != 0 ? 4 : 0) | ((zMin & bit) != 0 ? 2 : 0) | ((zMax & bit) != 0 ? 1 : 0);
+            switch (pattern) {
+                case 1://0,0,1: the answer is either in the upper half or below the middle
+                    bigMin = (zMin | bit) & ~laneMask;
+                    zMax = (zMax & ~bit) | laneMask;
+                    break;
+                case 3://0,1,1: the whole rectangle is after z
+                    return zMin;
+                case 4://1,0,0: the rectangle is before z
+                    return bigMin;
+                case 5://1,0,1: only the upper half matters
+                    zMin = (zMin | bit) & ~laneMask;
+                    break;
+                default://0,0,0 and 1,1,1 go on, 0,1,0 and 1,1,0 can not happen as zMin <= zMax
+                    break;
+            }
+        }
+        return bigMin;
     }
 }
@@ -0,0 +1,194 @@
+package geohashutil.asiainfo.com;
+
+import java.util.List;
+
+/**
+ * an immutable binary trie over {@link GeoHash#bits} with the number of points and the sum of their values
+ * at every node, so the points of a grid of any precision are counted in O(depth) without visiting them.<br>
+ * the depth of a node is the number of bits all of its keys share, i.e. the significantBits of the grid it stands for.
+ * chains of single children are skipped, every inner node branches on the bit at its depth, so there are
+ * less than 2 nodes per distinct key. nodes are columns of primitive arrays, about 21 bytes per node (29 with sums).
+ */
+public class GeoHashTrie {
+    private static final int NONE = -1;
+
+    private final int maxDepth;
+    private final long[] keys;
+    private final int[] left;
+    private final int[] right;
+    /**
+     * position in keys of the first key of the node, all keys of the node share its first depth bits
+     */
+    private final int[] first;
+    private final byte[] depth;
+    private final int[] count;
+    private final double[] sum;
+    private int nodes;
+
+    /**
+     * @param sortedBits keys sorted as unsigned longs, see {@link GeoHashPointIndex#getBits(int)}
+     * @param values     value of every key to sum up, null to keep counts only
+     * @param maxDepth   in [0,64], keys are cut to so many bits: a deeper grid can not be counted
+     */
+    public GeoHashTrie(final long[] sortedBits, final double[] values, final int maxDepth) {
+        if (maxDepth < 0 || maxDepth > 64) {
+            throw new IllegalArgumentException("maxDepth must be in [0,64]");
+        }
+        if (values != null && values.length != sortedBits.length) {
+            throw new IllegalArgumentException("values must have one value per key");
+        }
+        for (int i = 1; i < sortedBits.length; i++) {
+            if (Long.compareUnsigned(sortedBits[i - 1], sortedBits[i]) > 0) {
+                throw new IllegalArgumentException("keys must be sorted as unsigned longs");
+            }
+        }
+        this.maxDepth = maxDepth;
+        this.keys = sortedBits.clone();
+        final int capacity = Math.max(1, 2 * sortedBits.length - 1);
+        left = new int[capacity];
+        right = new int[capacity];
+        first = new int[capacity];
+        depth = new byte[capacity];
+        count = new int[capacity];
+        sum = values == null ? null : new double[capacity];
+        if (sortedBits.length > 0) {
+            build(0, sortedBits.length, values);
+        }
+    }
+
+    /**
+     * @return the node of the keys in [lo, hi)
+     */
+    private int build(final int lo, final int hi, final double[] values) {
+        final int node = nodes++;
+        first[node] = lo;
+        count[node] = hi - lo;
+        final int d = Math.min(maxDepth, GeoHash.commonPrefixLength(keys[lo], keys[hi - 1]));
+        depth[node] = (byte) d;
+        if (d == maxDepth) {
+            left[node] = right[node] = NONE;
+            if (sum != null) {
+                double s = 0;
+                for (int i = lo; i < hi; i++) {
+                    s += values[i];
+                }
+                sum[node] = s;
+            }
+            return node;
+        }
+        //the first key with bit d set, keys[hi-1] has it and keys[lo] has not
+        final long bit = 1L << (63 - d);
+        int low = lo + 1, high = hi - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if ((keys[mid] & bit) == 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        final int l = build(lo, low, values);
+        final int r = build(low, hi, values);
+        left[node] = l;
+        right[node] = r;
+        if (sum != null) {
+            sum[node] = sum[l] + sum[r];
+        }
+        return node;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return number of nodes
+     */
+    public int size() {
+        return nodes;
+    }
+
+    /**
+     * @return the node of the grid, NONE if no key is in it
+     */
+    private int find(final long bits, final int significantBits) {
+        if (significantBits < 0 || significantBits > maxDepth) {
+            throw new IllegalArgumentException("significantBits must be in [0," + maxDepth + "]");
+        }
+        if (nodes == 0)
+            return NONE;
+        int node = 0;
+        while (depth[node] < significantBits) {
+            node = (bits & (1L << (63 - depth[node]))) == 0 ? left[node] : right[node];
+        }
+        //the skipped bits are compared once at the end
+        final long diff = keys[first[node]] ^ bits;
+        return significantBits == 0 || diff >>> (64 - significantBits) == 0 ? node : NONE;
+    }
+
+    /**
+     * @return number of keys in the grid of the significant bits of bits
+     */
+    public int count(final long bits, final int significantBits) {
+        final int node = find(bits, significantBits);
+        return node == NONE ? 0 : count[node];
+    }
+
+    public int count(final GeoHash hash) {
+        return count(hash.bits, hash.significantBits);
+    }
+
+    /**
+     * @return sum of the values of the keys in the grid, 0 without values
+     */
+    public double sum(final long bits, final int significantBits) {
+        final int node = find(bits, significantBits);
+        return node == NONE || sum == null ? 0 : sum[node];
+    }
+
+    public double sum(final GeoHash hash) {
+        return sum(hash.bits, hash.significantBits);
+    }
+
+    /**
+     * @param cells disjoint grids, e.g. {@link GeoHashSearchUtil#leastBoundingSliceMerged(BoundingBox, int)}
+     */
+    public long count(final List<GeoHash> cells) {
+        long r = 0;
+        for (GeoHash cell : cells) {
+            r += count(cell.bits, cell.significantBits);
+        }
+        return r;
+    }
+
+    /**
+     * @return number of keys with an ord in [start, end) at the precision, counted by aligned blocks
+     */
+    public long countRange(long start, final long end, final int precision) {
+        long r = 0;
+        while (start < end) {
+            //the largest aligned block starting at start and ending before end
+            int k = start == 0 ? precision : Math.min(Long.numberOfTrailingZeros(start), precision);
+            while (k > 0 && start + (1L << k) > end) {
+                --k;
+            }
+            final int bits = precision - k;
+            r += count(bits == 0 ? 0 : start << (64 - precision), bits);
+            start += 1L << k;
+        }
+        return r;
+    }
+
+    /**
+     * @return number of keys in the grids of the precision intersecting the box, see {@link GeoHashSearchUtil#rangesFor}
+     * @param precision in [0,min(62,maxDepth)], the count is exact up to the size of one such grid
+     */
+    public long count(final BoundingBox box, final int precision) {
+        final long[] ranges = GeoHashSearchUtil.rangesFor(box, precision, Integer.MAX_VALUE);
+        long r = 0;
+        for (int i = 0; i < ranges.length; i += 2) {
+            r += countRange(ranges[i], ranges[i + 1], precision);
+        }
+        return r;
+    }
+}
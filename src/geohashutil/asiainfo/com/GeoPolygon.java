@@ -0,0 +1,154 @@
+package geohashutil.asiainfo.com;
+
+import java.io.Serializable;
+
+/**
+ * a simple polygon given by its vertices, the last vertex is connected back to the first one.<br>
+ * edges are straight lines in the lat/lon plane, the polygon must not cross the antimeridian.
+ */
+public class GeoPolygon implements GeoShape, Serializable {
+    private static final long serialVersionUID = 3286570447395937401L;
+    /**
+     * 纬度,y
+     */
+    private final double[] lats;
+    /**
+     * 经度,x
+     */
+    private final double[] lons;
+    private final BoundingBox boundingBox;
+
+    public GeoPolygon(WGS84Point... vertices) {
+        this(latitudesOf(vertices), longitudesOf(vertices));
+    }
+
+    public GeoPolygon(double[] lats, double[] lons) {
+        if (lats.length != lons.length || lats.length < 3) {
+            throw new IllegalArgumentException("A polygon needs at least 3 vertices with both latitude and longitude");
+        }
+        this.lats = lats.clone();
+        this.lons = lons.clone();
+        double minLat = lats[0], maxLat = lats[0], minLon = lons[0], maxLon = lons[0];
+        for (int i = 1; i < lats.length; i++) {
+            minLat = Math.min(minLat, lats[i]);
+            maxLat = Math.max(maxLat, lats[i]);
+            minLon = Math.min(minLon, lons[i]);
+            maxLon = Math.max(maxLon, lons[i]);
+        }
+        boundingBox = new BoundingBox(minLat, maxLat, minLon, maxLon);
+    }
+
+    private static double[] latitudesOf(WGS84Point[] vertices) {
+        double[] r = new double[vertices.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = vertices[i].latitude;
+        }
+        return r;
+    }
+
+    private static double[] longitudesOf(WGS84Point[] vertices) {
+        double[] r = new double[vertices.length];
+        for (int i = 0; i < r.length; i++) {
+            r[i] = vertices[i].longitude;
+        }
+        return r;
+    }
+
+    public int size() {
+        return lats.length;
+    }
+
+    @Override
+    public BoundingBox getBoundingBox() {
+        return boundingBox;
+    }
+
+    /**
+     * even-odd rule
+     */
+    @Override
+    public boolean contains(double latitude, double longitude) {
+        boolean inside = false;
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+            if ((lats[i] > latitude) != (lats[j] > latitude)
+                    && longitude < (lons[j] - lons[i]) * (latitude - lats[i]) / (lats[j] - lats[i]) + lons[i]) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    public boolean contains(WGS84Point point) {
+        return contains(point.latitude, point.longitude);
+    }
+
+    @Override
+    public boolean intersects(BoundingBox box) {
+        if (!boundingBox.intersects(box))
+            return false;
+        if (contains(box.minLat, box.minLon))
+            return true;
+        return anyEdgeIntersects(box);
+    }
+
+    @Override
+    public boolean contains(BoundingBox box) {
+        return boundingBox.contains(box)
+                && contains(box.minLat, box.minLon) && contains(box.minLat, box.maxLon)
+                && contains(box.maxLat, box.minLon) && contains(box.maxLat, box.maxLon)
+                && !anyEdgeIntersects(box);
+    }
+
+    /**
+     * a vertex inside the box is part of an edge inside the box
+     */
+    private boolean anyEdgeIntersects(BoundingBox box) {
+        for (int i = 0, j = lats.length - 1; i < lats.length; j = i++) {
+            if (segmentIntersects(box, lats[j], lons[j], lats[i], lons[i]))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Liang-Barsky clipping of the segment against the box
+     */
+    private static boolean segmentIntersects(BoundingBox box, double lat1, double lon1, double lat2, double lon2) {
+        final double dLon = lon2 - lon1;
+        final double dLat = lat2 - lat1;
+        double t0 = 0, t1 = 1;
+        //the part of the segment inside the box is lat1+t*dLat, lon1+t*dLon for t in [t0,t1], clip one side after another
+        for (int side = 0; side < 4; side++) {
+            final double p, q;
+            switch (side) {
+                case 0: p = -dLon; q = lon1 - box.minLon; break;
+                case 1: p = dLon;  q = box.maxLon - lon1; break;
+                case 2: p = -dLat; q = lat1 - box.minLat; break;
+                default: p = dLat; q = box.maxLat - lat1; break;
+            }
+            if (p == 0) {
+                if (q < 0)
+                    return false;
+            } else {
+                final double t = q / p;
+                if (p < 0) {
+                    t0 = Math.max(t0, t);
+                } else {
+                    t1 = Math.min(t1, t);
+                }
+                if (t0 > t1)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("polygon");
+        for (int i = 0; i < lats.length; i++) {
+            buf.append(" (").append(lats[i]).append(',').append(lons[i]).append(')');
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,23 @@
+package geohashutil.asiainfo.com;
+
+/**
+ * a region that can be covered by geohash grids, see {@link GeoHashSearchUtil#cover(GeoShape, int, int)}
+ */
+public interface GeoShape {
+    /**
+     * @return the smallest box containing the whole shape
+     */
+    BoundingBox getBoundingBox();
+
+    boolean contains(double latitude, double longitude);
+
+    /**
+     * may be true for a box only touching the shape, but must be false only if they share no point
+     */
+    boolean intersects(BoundingBox box);
+
+    /**
+     * may be false for a box inside the shape, but must be true only if every point of the box is in the shape
+     */
+    boolean contains(BoundingBox box);
+}
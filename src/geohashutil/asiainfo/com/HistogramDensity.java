@@ -0,0 +1,103 @@
+package geohashutil.asiainfo.com;
+
+/**
+ * a histogram of point counts per grid of one precision, points spread evenly inside a grid,
+ * see {@link DensityEstimate#fromCounts(long[], int)}.<br>
+ * the counts are kept as a summed area table over the lat/lon lanes of the grids, so the points of any rectangle
+ * of grids are 4 lookups. a box splits into at most 3 x 3 such rectangles: its inner grids and the grids of its
+ * border rows and columns, whose share inside the box is the same along a row (column),
+ * so every estimate is O(1) whatever the size of the box.
+ */
+final class HistogramDensity implements DensityEstimate {
+    private final int precision;
+    /**
+     * 经度,x: grids along longitude
+     */
+    private final int width;
+    /**
+     * 纬度,y: grids along latitude
+     */
+    private final int height;
+    private final double latDelta;
+    private final double lonDelta;
+    /**
+     * sums[y * (width + 1) + x]: points of the grids below lat lane y and left of lon lane x
+     */
+    private final long[] sums;
+
+    HistogramDensity(final long[] counts, final int precision) {
+        this.precision = precision;
+        final int lenY = precision >>> 1;
+        final int lenX = precision - lenY;
+        width = 1 << lenX;
+        height = 1 << lenY;
+        latDelta = GeoHash.D180 / height;
+        lonDelta = GeoHash.D180 * 2 / width;
+        final int stride = width + 1;
+        sums = new long[(height + 1) * stride];
+        for (int ord = 0; ord < counts.length; ord++) {
+            final long bits = precision == 0 ? 0 : (long) ord << (64 - precision);
+            final int y = (int) GeoHashCodec.decodeLatBits(bits, precision);
+            final int x = (int) GeoHashCodec.decodeLonBits(bits, precision);
+            sums[(y + 1) * stride + x + 1] = counts[ord];
+        }
+        for (int y = 1; y <= height; y++) {
+            for (int x = 1; x <= width; x++) {
+                sums[y * stride + x] += sums[(y - 1) * stride + x] + sums[y * stride + x - 1] - sums[(y - 1) * stride + x - 1];
+            }
+        }
+    }
+
+    /**
+     * @return points of the grids of lat lanes [y0,y1) and lon lanes [x0,x1)
+     */
+    private long sum(final int y0, final int y1, final int x0, final int x1) {
+        if (y0 >= y1 || x0 >= x1)
+            return 0;
+        final int stride = width + 1;
+        return sums[y1 * stride + x1] - sums[y0 * stride + x1] - sums[y1 * stride + x0] + sums[y0 * stride + x0];
+    }
+
+    @Override
+    public double estimate(final BoundingBox box) {
+        final long lbg = GeoHashCodec.encode(box.minLat, box.minLon, precision);
+        final long rtg = GeoHashCodec.encode(box.maxLat, box.maxLon, precision);
+        final int y0 = (int) GeoHashCodec.decodeLatBits(lbg, precision), y1 = (int) GeoHashCodec.decodeLatBits(rtg, precision);
+        final int x0 = (int) GeoHashCodec.decodeLonBits(lbg, precision), x1 = (int) GeoHashCodec.decodeLonBits(rtg, precision);
+        //lanes [start, end) of the 3 parts of each axis and the share of their grids inside the box
+        final int[] ys = {y0, y0 + 1, y1, y1 + 1};
+        final int[] xs = {x0, x0 + 1, x1, x1 + 1};
+        final double[] fy = {latShare(y0, box), 1, latShare(y1, box)};
+        final double[] fx = {lonShare(x0, box), 1, lonShare(x1, box)};
+        //a single row (column) is all in the first part
+        if (y0 == y1) {
+            ys[1] = ys[2] = ys[3];
+        }
+        if (x0 == x1) {
+            xs[1] = xs[2] = xs[3];
+        }
+        double sum = 0;
+        for (int i = 0; i < 3; i++) {
+            for (int j = 0; j < 3; j++) {
+                final long points = sum(ys[i], ys[i + 1], xs[j], xs[j + 1]);
+                if (points != 0) {
+                    sum += points * fy[i] * fx[j];
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * @return share of the grids of lat lane y inside the box
+     */
+    private double latShare(final int y, final BoundingBox box) {
+        final double min = y * latDelta - GeoHash.D90;
+        return (Math.min(min + latDelta, box.maxLat) - Math.max(min, box.minLat)) / latDelta;
+    }
+
+    private double lonShare(final int x, final BoundingBox box) {
+        final double min = x * lonDelta - GeoHash.D180;
+        return (Math.min(min + lonDelta, box.maxLon) - Math.max(min, box.minLon)) / lonDelta;
+    }
+}
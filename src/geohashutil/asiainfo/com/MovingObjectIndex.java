@@ -0,0 +1,382 @@
+package geohashutil.asiainfo.com;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.function.LongFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * a concurrent index of moving objects, an object is a long id at a position that is updated all the time.<br>
+ * objects are kept in buckets by the prefix of bucketBits bits of their geohash, i.e. the ord of the bucket grid.
+ * a writer locks the buckets it changes only: a move inside one grid of the bucket precision locks that bucket,
+ * a move to another bucket locks both, in the order of their ords.
+ * readers take no lock: a bucket publishes an immutable view of its slots through a volatile field,
+ * and positions are single 64 bit geohashes in an {@link AtomicLongArray}, so a reader sees the old or the new
+ * position of an object, never a mix. positions are kept at 64 bits, about 1cm.<br>
+ * ids and ords are never boxed: buckets and the entries of the ids are kept in insert only tables keyed by
+ * primitive longs. empty buckets and the entries of removed ids are kept for reuse.
+ */
+public class MovingObjectIndex {
+    public static final int DEFAULT_BUCKET_BITS = 20;
+    private static final int MAX_BUCKET_BITS = 30;
+    private static final double LAT_DELTA = GeoHash.deltaCached[32];
+    private static final double LON_DELTA = GeoHash.deltaCached[31];
+
+    /**
+     * what readers see of a bucket: slots [0,size) of the arrays, the arrays are shared by the views of a bucket
+     * until a removal copies them
+     */
+    private static final class Slots {
+        final long[] ids;
+        final AtomicLongArray points;
+        final int size;
+
+        Slots(long[] ids, AtomicLongArray points, int size) {
+            this.ids = ids;
+            this.points = points;
+            this.size = size;
+        }
+    }
+
+    /**
+     * an object: the bucket it is in, null while it is not in the index, and its slot there
+     */
+    private static final class Entry {
+        final long id;
+        /**
+         * changes only under the lock of the bucket it refers to, from null under the lock of the new bucket
+         */
+        volatile Bucket bucket;
+        /**
+         * guarded by the lock of the bucket
+         */
+        int slot;
+
+        Entry(long id) {
+            this.id = id;
+        }
+    }
+
+    private static final AtomicReferenceFieldUpdater<Entry, Bucket> ENTRY_BUCKET =
+            AtomicReferenceFieldUpdater.newUpdater(Entry.class, Bucket.class, "bucket");
+
+    private static final class Bucket {
+        final long ord;
+        volatile Slots slots = new Slots(new long[4], new AtomicLongArray(4), 0);
+        /**
+         * the entry of every slot, only touched by writers holding the lock of the bucket
+         */
+        Entry[] entries = new Entry[4];
+
+        Bucket(long ord) {
+            this.ord = ord;
+        }
+
+        /**
+         * the caller holds the lock
+         */
+        void add(Entry entry, long point) {
+            Slots s = slots;
+            long[] ids = s.ids;
+            AtomicLongArray points = s.points;
+            if (s.size == ids.length) {
+                ids = Arrays.copyOf(ids, s.size << 1);
+                points = new AtomicLongArray(s.size << 1);
+                for (int i = 0; i < s.size; i++) {
+                    points.lazySet(i, s.points.get(i));
+                }
+                entries = Arrays.copyOf(entries, s.size << 1);
+            }
+            //slot size is beyond the size of every published view, readers can not see it yet
+            ids[s.size] = entry.id;
+            points.lazySet(s.size, point);
+            entries[s.size] = entry;
+            entry.slot = s.size;
+            slots = new Slots(ids, points, s.size + 1);
+        }
+
+        /**
+         * the caller holds the lock, the last object takes the slot in a copy so readers of the old view see all
+         */
+        void remove(int slot) {
+            final Slots s = slots;
+            final int last = s.size - 1;
+            final long[] ids = Arrays.copyOf(s.ids, s.ids.length);
+            final AtomicLongArray points = new AtomicLongArray(s.ids.length);
+            for (int i = 0; i < last; i++) {
+                points.lazySet(i, s.points.get(i));
+            }
+            if (slot != last) {
+                ids[slot] = s.ids[last];
+                points.lazySet(slot, s.points.get(last));
+                entries[slot] = entries[last];
+                entries[slot].slot = slot;
+            }
+            entries[last] = null;
+            slots = new Slots(ids, points, last);
+        }
+    }
+
+    /**
+     * an insert only open addressing table of values keyed by a long, lookups take no lock and box nothing.
+     * insertions lock the table, a lookup racing with one may miss the new value
+     */
+    private static final class LongTable<V> {
+        private final ToLongFunction<V> keyOf;
+        private final LongFunction<V> factory;
+        private volatile AtomicReferenceArray<V> table = new AtomicReferenceArray<>(16);
+        private volatile int size;
+
+        LongTable(ToLongFunction<V> keyOf, LongFunction<V> factory) {
+            this.keyOf = keyOf;
+            this.factory = factory;
+        }
+
+        private static int hash(long key) {
+            return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32);
+        }
+
+        /**
+         * @return the value of the key, null if there is none
+         */
+        V get(final long key) {
+            final AtomicReferenceArray<V> t = table;
+            final int mask = t.length() - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                final V v = t.get(i);
+                if (v == null || keyOf.applyAsLong(v) == key)
+                    return v;
+            }
+        }
+
+        V getOrCreate(final long key) {
+            final V v = get(key);
+            return v != null ? v : create(key);
+        }
+
+        private synchronized V create(final long key) {
+            AtomicReferenceArray<V> t = table;
+            //at most half full, there is always an empty slot to stop at
+            if ((size + 1) << 1 > t.length()) {
+                final AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(t.length() << 1);
+                for (int i = 0; i < t.length(); i++) {
+                    final V v = t.get(i);
+                    if (v != null) {
+                        put(grown, v);
+                    }
+                }
+                table = t = grown;
+            }
+            final int mask = t.length() - 1;
+            for (int i = hash(key) & mask; ; i = (i + 1) & mask) {
+                final V v = t.get(i);
+                if (v == null) {
+                    final V created = factory.apply(key);
+                    t.set(i, created);
+                    ++size;
+                    return created;
+                }
+                if (keyOf.applyAsLong(v) == key)
+                    return v;
+            }
+        }
+
+        private void put(final AtomicReferenceArray<V> t, final V v) {
+            final int mask = t.length() - 1;
+            int i = hash(keyOf.applyAsLong(v)) & mask;
+            while (t.get(i) != null) {
+                i = (i + 1) & mask;
+            }
+            t.lazySet(i, v);
+        }
+
+        int size() {
+            return size;
+        }
+
+        void forEach(final Consumer<V> consumer) {
+            final AtomicReferenceArray<V> t = table;
+            for (int i = 0; i < t.length(); i++) {
+                final V v = t.get(i);
+                if (v != null) {
+                    consumer.accept(v);
+                }
+            }
+        }
+    }
+
+    private final int bucketBits;
+    private final LongTable<Bucket> buckets = new LongTable<>(bucket -> bucket.ord, Bucket::new);
+    private final LongTable<Entry> entries = new LongTable<>(entry -> entry.id, Entry::new);
+    private final AtomicInteger size = new AtomicInteger();
+
+    public MovingObjectIndex() {
+        this(DEFAULT_BUCKET_BITS);
+    }
+
+    /**
+     * @param bucketBits precision of the bucket grids in [0,30], a bucket should hold tens to hundreds of objects
+     */
+    public MovingObjectIndex(int bucketBits) {
+        if (bucketBits < 0 || bucketBits > MAX_BUCKET_BITS) {
+            throw new IllegalArgumentException("bucketBits must be in [0," + MAX_BUCKET_BITS + "]");
+        }
+        this.bucketBits = bucketBits;
+    }
+
+    private long bucketOrd(long point) {
+        return bucketBits == 0 ? 0 : point >>> (64 - bucketBits);
+    }
+
+    /**
+     * insert the object or move it to the position
+     */
+    public void update(final long id, final double latitude, final double longitude) {
+        final long point = GeoHashCodec.encode(latitude, longitude, 64);
+        final Bucket target = buckets.getOrCreate(bucketOrd(point));
+        final Entry entry = entries.getOrCreate(id);
+        while (true) {
+            final Bucket source = entry.bucket;
+            if (source == null) {
+                synchronized (target) {
+                    if (ENTRY_BUCKET.compareAndSet(entry, null, target)) {
+                        target.add(entry, point);
+                        size.incrementAndGet();
+                        return;
+                    }
+                }
+            } else if (source == target) {
+                synchronized (target) {
+                    if (entry.bucket == target) {
+                        target.slots.points.set(entry.slot, point);
+                        return;
+                    }
+                }
+            } else {
+                final Bucket first = source.ord < target.ord ? source : target;
+                final Bucket second = first == source ? target : source;
+                synchronized (first) {
+                    synchronized (second) {
+                        if (entry.bucket == source) {
+                            //added before it is removed, a reader following the entry always finds the object
+                            final int slot = entry.slot;
+                            target.add(entry, point);
+                            entry.bucket = target;
+                            source.remove(slot);
+                            return;
+                        }
+                    }
+                }
+            }
+            //another writer moved or removed the object meanwhile
+        }
+    }
+
+    public boolean remove(final long id) {
+        final Entry entry = entries.get(id);
+        if (entry == null)
+            return false;
+        while (true) {
+            final Bucket source = entry.bucket;
+            if (source == null)
+                return false;
+            synchronized (source) {
+                if (entry.bucket == source) {
+                    //a concurrent insertion may take the entry as soon as it is released
+                    final int slot = entry.slot;
+                    entry.bucket = null;
+                    source.remove(slot);
+                    size.decrementAndGet();
+                    return true;
+                }
+            }
+        }
+    }
+
+    public int size() {
+        return size.get();
+    }
+
+    /**
+     * @return the position of the object, null if it is not in the index. takes no lock, the slots of the
+     * object's bucket are scanned for it like {@link #forEachInBox(BoundingBox, LongConsumer)} does
+     */
+    public WGS84Point getPosition(final long id) {
+        final Entry entry = entries.get(id);
+        if (entry == null)
+            return null;
+        while (true) {
+            final Bucket bucket = entry.bucket;
+            if (bucket == null)
+                return null;
+            final Slots s = bucket.slots;
+            for (int i = 0; i < s.size; i++) {
+                if (s.ids[i] == id) {
+                    final long point = s.points.get(i);
+                    return WGS84Point.Create(latitudeOf(point), longitudeOf(point));
+                }
+            }
+            //the object moved on from the bucket, or its insertion is not published yet
+            Thread.onSpinWait();
+        }
+    }
+
+    private static double latitudeOf(long point) {
+        return GeoHashCodec.decodeLatBits(point, 64) * LAT_DELTA - GeoHash.D90;
+    }
+
+    private static double longitudeOf(long point) {
+        return GeoHashCodec.decodeLonBits(point, 64) * LON_DELTA - GeoHash.D180;
+    }
+
+    /**
+     * call the consumer with the id of every object in the box, without blocking any writer.
+     * an object moving meanwhile may be missed or seen twice
+     */
+    public void forEachInBox(final BoundingBox box, final LongConsumer consumer) {
+        final long[] ranges = GeoHashSearchUtil.rangesFor(box, bucketBits, Integer.MAX_VALUE);
+        long grids = 0;
+        for (int r = 0; r < ranges.length; r += 2) {
+            grids += ranges[r + 1] - ranges[r];
+        }
+        if (grids > buckets.size()) {
+            buckets.forEach(bucket -> scan(bucket, box, consumer));
+            return;
+        }
+        for (int r = 0; r < ranges.length; r += 2) {
+            for (long ord = ranges[r]; ord < ranges[r + 1]; ord++) {
+                final Bucket bucket = buckets.get(ord);
+                if (bucket != null) {
+                    scan(bucket, box, consumer);
+                }
+            }
+        }
+    }
+
+    private static void scan(final Bucket bucket, final BoundingBox box, final LongConsumer consumer) {
+        final Slots s = bucket.slots;
+        for (int i = 0; i < s.size; i++) {
+            final long point = s.points.get(i);
+            if (box.contains(latitudeOf(point), longitudeOf(point))) {
+                consumer.accept(s.ids[i]);
+            }
+        }
+    }
+
+    public long[] queryBox(final BoundingBox box) {
+        final long[][] found = {new long[16]};
+        final int[] count = {0};
+        forEachInBox(box, id -> {
+            if (count[0] == found[0].length) {
+                found[0] = Arrays.copyOf(found[0], count[0] << 1);
+            }
+            found[0][count[0]++] = id;
+        });
+        return Arrays.copyOf(found[0], count[0]);
+    }
+}
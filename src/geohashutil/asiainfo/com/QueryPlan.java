@@ -0,0 +1,50 @@
+package geohashutil.asiainfo.com;
+
+import java.util.List;
+
+/**
+ * the cover chosen by {@link QueryPlanner} and its expected cost, meant to be logged and inspected.<br>
+ * points found in the interior grids are in the shape, only those of the boundary grids need the exact test.
+ */
+public class QueryPlan {
+    public final GeoShape shape;
+    /**
+     * the budget and the finest precision the cover was computed with
+     */
+    public final int maxCells;
+    public final int maxPrecision;
+    public final List<GeoHash> interior;
+    public final List<GeoHash> boundary;
+    /**
+     * [start, end) pairs of {@link GeoHash#ord()} at maxPrecision, one key range scan each
+     */
+    public final long[] ranges;
+    public final double expectedScannedPoints;
+    public final double expectedFilteredPoints;
+    public final double cost;
+
+    public QueryPlan(GeoShape shape, int maxCells, int maxPrecision, List<GeoHash> interior, List<GeoHash> boundary,
+                     long[] ranges, double expectedScannedPoints, double expectedFilteredPoints, double cost) {
+        this.shape = shape;
+        this.maxCells = maxCells;
+        this.maxPrecision = maxPrecision;
+        this.interior = interior;
+        this.boundary = boundary;
+        this.ranges = ranges;
+        this.expectedScannedPoints = expectedScannedPoints;
+        this.expectedFilteredPoints = expectedFilteredPoints;
+        this.cost = cost;
+    }
+
+    public int getRangeCount() {
+        return ranges.length >>> 1;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("plan of %s: %d interior + %d boundary grids (max %d cells, %d bits), %d ranges, "
+                        + "scan %.1f points, filter %.1f points, cost %.1f",
+                shape, interior.size(), boundary.size(), maxCells, maxPrecision, getRangeCount(),
+                expectedScannedPoints, expectedFilteredPoints, cost);
+    }
+}
@@ -0,0 +1,88 @@
+package geohashutil.asiainfo.com;
+
+import com.asiainfo.cem.common.utils.Pairs;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * chooses the cover of a query shape with the least expected cost instead of a fixed level or a hand picked maxLen.<br>
+ * the cost of a cover is seekCost per key range + scanCost per point in its grids + filterCost per point in its
+ * boundary grids, which need the exact test against the shape; points are counted by a {@link DensityEstimate}.
+ * a finer cover scans less area outside the shape but takes more ranges, so the cost first falls and then rises
+ * with the budget: the planner tries budgets of 1, 2, 4 ... maxCells grids and stops at the first one costing more.
+ */
+public class QueryPlanner {
+    public static final double DEFAULT_SEEK_COST = 64;
+    public static final double DEFAULT_SCAN_COST = 1;
+    public static final double DEFAULT_FILTER_COST = 4;
+    public static final int DEFAULT_MAX_CELLS = 1024;
+    private static final int MAX_CELLS = 1 << 20;
+
+    private final double seekCost;
+    private final double scanCost;
+    private final double filterCost;
+    private final int maxCells;
+
+    public QueryPlanner() {
+        this(DEFAULT_SEEK_COST, DEFAULT_SCAN_COST, DEFAULT_FILTER_COST, DEFAULT_MAX_CELLS);
+    }
+
+    /**
+     * the costs are in any common unit, e.g. microseconds
+     * @param maxCells the largest budget tried, at most 2^20
+     */
+    public QueryPlanner(double seekCost, double scanCost, double filterCost, int maxCells) {
+        if (!(seekCost >= 0 && scanCost >= 0 && filterCost >= 0)) {
+            throw new IllegalArgumentException("costs must not be negative");
+        }
+        if (maxCells < 1 || maxCells > MAX_CELLS) {
+            throw new IllegalArgumentException("maxCells must be in [1,2^20]");
+        }
+        this.seekCost = seekCost;
+        this.scanCost = scanCost;
+        this.filterCost = filterCost;
+        this.maxCells = maxCells;
+    }
+
+    public QueryPlan plan(final GeoShape shape, final DensityEstimate density) {
+        final int slicePrecision = GeoHashSearchUtil.slicePrecision(shape.getBoundingBox(), 62);
+        QueryPlan best = null;
+        for (int cells = 1; cells <= maxCells; cells <<= 1) {
+            //about 4*2^j grids along the border j levels of each lane finer than the slices
+            final int levels = 32 - Integer.numberOfLeadingZeros(cells);
+            final QueryPlan plan = evaluate(shape, density, cells, Math.min(62, slicePrecision + 2 * levels));
+            if (best == null || plan.cost < best.cost) {
+                best = plan;
+            } else if (plan.cost > best.cost) {
+                //past the cheapest budget, finer covers only take more ranges
+                break;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * the plan of the cover with the given budget, see {@link GeoHashSearchUtil#coverClassified(GeoShape, int, int)}
+     * @param maxPrecision in [0,62]
+     */
+    public QueryPlan evaluate(final GeoShape shape, final DensityEstimate density, final int maxCells, final int maxPrecision) {
+        final Pairs<List<GeoHash>, List<GeoHash>> cover = GeoHashSearchUtil.coverClassified(shape, maxCells, maxPrecision);
+        double interiorPoints = 0;
+        for (GeoHash cell : cover.fst) {
+            interiorPoints += density.estimate(cell.getBoundingBox());
+        }
+        double boundaryPoints = 0;
+        for (GeoHash cell : cover.snd) {
+            boundaryPoints += density.estimate(cell.getBoundingBox());
+        }
+        final List<GeoHash> cells = new ArrayList<>(cover.fst.size() + cover.snd.size());
+        cells.addAll(cover.fst);
+        cells.addAll(cover.snd);
+        cells.sort(null);
+        final long[] ranges = GeoHashSearchUtil.rangesOf(cells, maxPrecision);
+        final double scanned = interiorPoints + boundaryPoints;
+        final double cost = (ranges.length >>> 1) * seekCost + scanned * scanCost + boundaryPoints * filterCost;
+        return new QueryPlan(shape, maxCells, maxPrecision, cover.fst, cover.snd, ranges, scanned, boundaryPoints, cost);
+    }
+}
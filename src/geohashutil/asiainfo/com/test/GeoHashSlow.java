@@ -1,3 +1,5 @@
+package geohashutil.asiainfo.com.test;
+
 import geohashutil.asiainfo.com.BoundingBox;
 import geohashutil.asiainfo.com.GeoHash;
 
@@ -1,7 +1,25 @@
+package geohashutil.asiainfo.com.test;
+
 import com.asiainfo.cem.common.utils.Pairs;
 import geohashutil.asiainfo.com.BoundingBox;
+import geohashutil.asiainfo.com.BoundingBoxNavIterator;
+import geohashutil.asiainfo.com.BoundingSlice;
+import geohashutil.asiainfo.com.CoverCache;
+import geohashutil.asiainfo.com.DensityEstimate;
+import geohashutil.asiainfo.com.GeoCircle;
 import geohashutil.asiainfo.com.GeoHash;
+import geohashutil.asiainfo.com.GeoHashCache;
+import geohashutil.asiainfo.com.GeoHashCodec;
+import geohashutil.asiainfo.com.GeoHashIndexFile;
+import geohashutil.asiainfo.com.GeoHashNavIterator;
+import geohashutil.asiainfo.com.GeoHashPointIndex;
 import geohashutil.asiainfo.com.GeoHashSearchUtil;
+import geohashutil.asiainfo.com.GeoHashTrie;
+import geohashutil.asiainfo.com.GeoPolygon;
+import geohashutil.asiainfo.com.MovingObjectIndex;
+import geohashutil.asiainfo.com.QueryPlan;
+import geohashutil.asiainfo.com.QueryPlanner;
+import geohashutil.asiainfo.com.VincentyGeodesy;
 import geohashutil.asiainfo.com.WGS84Point;
 import org.junit.Test;
 
@@ -18,9 +36,9 @@ public class GeoHashTest {
     }
 
     private void printBoundingBox(GeoHash hash) {
-        System.out.println("Bounding Box: \ncenter =" + hash.boundingBox.getCenterPoint());
+        System.out.println("Bounding Box: \ncenter =" + hash.getBoundingBox().getCenterPoint());
         System.out.print("corners=");
-        System.out.println(hash.boundingBox);
+        System.out.println(hash.getBoundingBox());
     }
 
     @Test
@@ -79,6 +97,62 @@ public class GeoHashTest {
         System.out.println(delta/(double)elapsedOld);
     }
 
+    @Test
+    public void testCodecMatchesGeoHash() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        double[] box = new double[4];
+        for (int i = 0; i < 10000; i++) {
+            double lng=r.nextDouble()*360-180;
+            double lat=r.nextDouble()*180 -90;
+            for (int numberOfBits = 1; numberOfBits <= 64; numberOfBits++) {
+                GeoHash hash = GeoHash.withBitPrecision(lat, lng, numberOfBits);
+                long bits = GeoHashCodec.encode(lat, lng, numberOfBits);
+                assertEquals(hash.bits, bits);
+                assertEquals(hash.latBits, GeoHashCodec.decodeLatBits(bits, numberOfBits));
+                assertEquals(hash.lonBits, GeoHashCodec.decodeLonBits(bits, numberOfBits));
+                GeoHashCodec.boundingBoxInto(bits, numberOfBits, box);
+                assertEquals(hash.getBoundingBox(), new BoundingBox(box[0], box[1], box[2], box[3]));
+            }
+        }
+    }
+
+    @Test
+    public void testCodecDeinterleave() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int i = 0; i < 100000; i++) {
+            long bits = r.nextLong();
+            for (byte numberOfBits = 0; numberOfBits <= 64; numberOfBits++) {
+                GeoHashSlow old = GeoHashSlow.fromLongValue(bits, numberOfBits);
+                long lanes = GeoHashCodec.deinterleave(bits, numberOfBits);
+                assertEquals(old.latBits, lanes & 0xffffffffL);
+                assertEquals(old.lonBits, lanes >>> 32);
+            }
+        }
+    }
+
+    @Test
+    public void testCodecBulkEncode() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        final int count = 1000;
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            lngs[i] = r.nextDouble()*360-180;
+            lats[i] = r.nextDouble()*180 -90;
+        }
+        lats[0] = 90;
+        lngs[0] = 180;
+        lats[1] = -90;
+        lngs[1] = -180;
+        long[] out = new long[count];
+        for (int numberOfBits = 0; numberOfBits <= 64; numberOfBits++) {
+            GeoHashCodec.encode(lats, lngs, numberOfBits, out);
+            for (int i = 0; i < count; i++) {
+                assertEquals(GeoHashCodec.encode(lats[i], lngs[i], numberOfBits), out[i]);
+            }
+        }
+    }
+
     @Test
     public void testKnownPrefixLenghts() {
         char t = 'a';
@@ -197,7 +271,7 @@ public class GeoHashTest {
             sliceNumAvg += slices.size();
             double total = 0;
             for (GeoHash slice : slices) {
-                BoundingBox boundingBox = slice.boundingBox;
+                BoundingBox boundingBox = slice.getBoundingBox();
                 total += boundingBox.getLatitudeSize()* boundingBox.getLongitudeSize();
             }
             eff += box.getLatitudeSize()*box.getLongitudeSize()/total;
@@ -237,6 +311,669 @@ public class GeoHashTest {
         }
     }
 
+    @Test
+    public void testLeastBoundingSliceMergedIsExact() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int i = 0; i < 200; i++) {
+            double lat = r.nextDouble() * 160 - 80;
+            double lng = r.nextDouble() * 340 - 170;
+            BoundingBox box = new BoundingBox(lat, lat + r.nextDouble() * 0.2, lng, lng + r.nextDouble() * 0.2);
+            int maxLen = 20 + r.nextInt(20);
+            List<GeoHash> slices = GeoHashSearchUtil.leastBoundingSlice(box, maxLen);
+            List<GeoHash> merged = GeoHashSearchUtil.leastBoundingSliceMerged(box, maxLen);
+            int precision = slices.get(0).significantBits;
+            long covered = 0;
+            for (int j = 0; j < merged.size(); j++) {
+                GeoHash cell = merged.get(j);
+                covered += 1L << (precision - cell.significantBits);
+                if (j > 0)
+                    assertTrue(merged.get(j - 1).compareTo(cell) < 0);
+            }
+            assertEquals(slices.size(), covered);
+            for (GeoHash slice : slices) {
+                int count = 0;
+                for (GeoHash cell : merged) {
+                    if (slice.within(cell))
+                        count++;
+                }
+                assertEquals(1, count);
+            }
+        }
+    }
+
+    @Test
+    public void testRangesFor() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int i = 0; i < 200; i++) {
+            double lat = r.nextDouble() * 160 - 80;
+            double lng = r.nextDouble() * 340 - 170;
+            BoundingBox box = new BoundingBox(lat, lat + r.nextDouble() * 0.5, lng, lng + r.nextDouble() * 0.5);
+            int precision = 10 + r.nextInt(20);
+            GeoHash lbg = box.getLowerLeftHash(precision);
+            GeoHash rtg = box.getUpperRightHash(precision);
+            List<Long> ords = new java.util.ArrayList<>();
+            for (long y = lbg.latBits; y <= rtg.latBits; y++) {
+                for (long x = lbg.lonBits; x <= rtg.lonBits; x++) {
+                    ords.add(lbg.navFromSteps((int) (y - lbg.latBits), (int) (x - lbg.lonBits)).ord());
+                }
+            }
+            java.util.Collections.sort(ords);
+
+            long[] ranges = GeoHashSearchUtil.rangesFor(box, precision, Integer.MAX_VALUE);
+            int index = 0;
+            for (int j = 0; j < ranges.length; j += 2) {
+                assertTrue(ranges[j] < ranges[j + 1]);
+                if (j > 0)
+                    assertTrue(ranges[j - 1] < ranges[j]);
+                for (long ord = ranges[j]; ord < ranges[j + 1]; ord++) {
+                    assertEquals((long) ords.get(index++), ord);
+                }
+            }
+            assertEquals(ords.size(), index);
+
+            int maxRanges = 1 + r.nextInt(4);
+            long[] coarse = GeoHashSearchUtil.rangesFor(box, precision, maxRanges);
+            assertTrue(coarse.length <= maxRanges * 2);
+            assertEquals(Math.min(maxRanges, ranges.length / 2), coarse.length / 2);
+            for (long ord : ords) {
+                boolean found = false;
+                for (int j = 0; j < coarse.length; j += 2) {
+                    found |= ord >= coarse[j] && ord < coarse[j + 1];
+                }
+                assertTrue(found);
+            }
+        }
+        //minLat an ulp below a grid edge, the ranges hold the grids of the slices
+        BoundingBox[] edges = {
+                new BoundingBox(-71.91650390625001, -71.905517578125, -80.18488321214664, -80.15298696024912),
+                new BoundingBox(-61.17187500000001, -60.8203125, -142.02750217690763, -141.89017268382497),
+                new BoundingBox(-19.68750000000001, -18.703873990892824, 86.97262549661315, 87.29600865899454)};
+        for (BoundingBox box : edges) {
+            List<GeoHash> slices = new java.util.ArrayList<>(GeoHashSearchUtil.leastBoundingSlice(box, 36));
+            java.util.Collections.sort(slices);
+            int precision = slices.get(0).significantBits;
+            List<Long> ords = new java.util.ArrayList<>();
+            long[] ranges = GeoHashSearchUtil.rangesFor(box, precision, Integer.MAX_VALUE);
+            for (int j = 0; j < ranges.length; j += 2) {
+                for (long ord = ranges[j]; ord < ranges[j + 1]; ord++) {
+                    ords.add(ord);
+                }
+            }
+            assertEquals(slices.size(), ords.size());
+            for (int j = 0; j < slices.size(); j++) {
+                assertEquals(slices.get(j).ord(), (long) ords.get(j));
+            }
+        }
+    }
+
+    @Test
+    public void testCoverPolygon() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int i = 0; i < 50; i++) {
+            double lat = r.nextDouble() * 160 - 80;
+            double lng = r.nextDouble() * 340 - 170;
+            double size = r.nextDouble() * 0.5 + 0.01;
+            GeoPolygon triangle = new GeoPolygon(WGS84Point.Create(lat, lng),
+                    WGS84Point.Create(lat + size, lng + size * r.nextDouble()), WGS84Point.Create(lat, lng + size));
+            int maxCells = 4 + r.nextInt(60);
+            List<GeoHash> cells = GeoHashSearchUtil.cover(triangle, maxCells, 40);
+            assertTrue(cells.size() <= maxCells);
+            for (int j = 0; j < cells.size(); j++) {
+                assertTrue(cells.get(j).significantBits <= 40);
+                assertTrue(triangle.intersects(cells.get(j).getBoundingBox()));
+                if (j > 0)
+                    assertFalse(cells.get(j).within(cells.get(j - 1)));
+            }
+            for (int j = 0; j < 100; j++) {
+                double pLat = lat + r.nextDouble() * size;
+                double pLng = lng + r.nextDouble() * size;
+                if (!triangle.contains(pLat, pLng))
+                    continue;
+                boolean covered = false;
+                for (GeoHash cell : cells) {
+                    covered |= cell.getBoundingBox().contains(pLat, pLng);
+                }
+                assertTrue(covered);
+            }
+        }
+    }
+
+    @Test
+    public void testCoverInsideOneGrid() {
+        //a shape inside one grid of the corner level has a single least bounding grid
+        WGS84Point center = GeoHash.withBitPrecision(30.5, 110.5, 40).getBoundingBox().getCenterPoint();
+        double lat = center.latitude, lng = center.longitude, size = 1e-6;
+        GeoPolygon triangle = new GeoPolygon(WGS84Point.Create(lat, lng),
+                WGS84Point.Create(lat + size, lng), WGS84Point.Create(lat, lng + size));
+        List<GeoHash> cells = GeoHashSearchUtil.cover(triangle, 8, 40);
+        assertEquals(1, cells.size());
+        assertEquals(GeoHash.withBitPrecision(lat, lng, 40), cells.get(0));
+    }
+
+    @Test
+    public void testCoverCircle() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int i = 0; i < 30; i++) {
+            WGS84Point center = WGS84Point.Create(r.nextDouble() * 170 - 85, r.nextDouble() * 360 - 180);
+            double meters = 50 + r.nextDouble() * 20000;
+            int maxCells = 8 + r.nextInt(40);
+            GeoCircle circle = new GeoCircle(center, meters);
+            List<GeoHash> cells = GeoHashSearchUtil.coverCircle(center, meters, maxCells);
+            assertTrue(cells.size() <= maxCells);
+            for (GeoHash cell : cells) {
+                assertTrue(circle.intersects(cell.getBoundingBox()));
+            }
+            for (int j = 0; j < 64; j++) {
+                WGS84Point p = VincentyGeodesy.moveInDirection(center, j * 5.625, meters * r.nextDouble());
+                boolean covered = false;
+                for (GeoHash cell : cells) {
+                    covered |= cell.getBoundingBox().contains(p);
+                }
+                assertTrue(circle + " " + p, covered);
+            }
+        }
+    }
+
+    @Test
+    public void testLeastBoundingSliceWithMaxCells() {
+        for (int i = 0; i < 100; i++) {
+            BoundingBox box = prepareBoundingBox();
+            List<GeoHash> all = GeoHashSearchUtil.leastBoundingSlice(box, 40);
+            int slicePrecision = all.get(0).significantBits;
+            BoundingSlice same = GeoHashSearchUtil.leastBoundingSlice(box, slicePrecision, all.size());
+            assertEquals(all, same.slices);
+            assertEquals(slicePrecision, same.precision);
+            assertEquals(same.lonCount * same.latCount, same.slices.size());
+
+            //40 bits take far more cells than the budget, the slices get coarser until they fit
+            int budget = 1024 + (int) (Math.random() * 4096);
+            BoundingSlice fine = GeoHashSearchUtil.leastBoundingSlice(box, 40, budget);
+            assertTrue(fine.slices.size() <= budget);
+            assertTrue(fine.precision < 40);
+            assertTrue(fine.precision > slicePrecision);
+            assertTrue(GeoHashSearchUtil.leastBoundingSlice(box, fine.precision + 1, Integer.MAX_VALUE).slices.size() > budget);
+
+            int maxCells = 1 + (int) (Math.random() * all.size());
+            BoundingSlice slice = GeoHashSearchUtil.leastBoundingSlice(box, slicePrecision, maxCells);
+            assertTrue(slice.slices.size() <= maxCells);
+            assertTrue(slice.precision <= same.precision);
+            assertTrue(slice.coverArea >= slice.boxArea);
+            assertEquals(slice.coverArea - slice.boxArea, slice.getFalsePositiveArea(), 1e-9);
+            for (GeoHash corner : new GeoHash[]{box.getLowerLeftHash(slice.precision), box.getUpperRightHash(slice.precision)}) {
+                assertTrue(slice.slices.contains(corner));
+            }
+        }
+        BoundingSlice world = GeoHashSearchUtil.leastBoundingSlice(new BoundingBox(-90, 90, -180, 180), 40, 1);
+        assertEquals(1, world.slices.size());
+        assertEquals(0, world.precision);
+    }
+
+    @Test
+    public void testBoundingBoxNavigate() {
+        for (int i = 0; i < 50; i++) {
+            BoundingBox box = prepareBoundingBox();
+            List<GeoHash> slices = new java.util.ArrayList<>(GeoHashSearchUtil.leastBoundingSlice(box, 40));
+            java.util.Collections.sort(slices);
+            int precision = slices.get(0).significantBits;
+
+            BoundingBoxNavIterator it = box.navigate(precision);
+            for (GeoHash slice : slices) {
+                assertTrue(it.hasNext());
+                assertEquals(slice, it.next());
+            }
+            assertFalse(it.hasNext());
+
+            BoundingBoxNavIterator bitsIt = box.navigate(precision);
+            for (GeoHash slice : slices) {
+                assertEquals(slice.bits, bitsIt.nextBits());
+            }
+            assertFalse(bitsIt.hasNext());
+
+            List<GeoHash> streamed = java.util.stream.StreamSupport.stream(box.navigate(precision).spliterator(), true)
+                    .collect(java.util.stream.Collectors.toList());
+            assertEquals(slices, streamed);
+            assertEquals(slices.size(), java.util.stream.StreamSupport.longStream(box.navigate(precision).bitsSpliterator(), true)
+                    .distinct().count());
+        }
+        //minLat an ulp below a grid edge, the walk starts from the same corner grids as the slices
+        BoundingBox[] edges = {
+                new BoundingBox(-71.91650390625001, -71.905517578125, -80.18488321214664, -80.15298696024912),
+                new BoundingBox(-61.17187500000001, -60.8203125, -142.02750217690763, -141.89017268382497),
+                new BoundingBox(-19.68750000000001, -18.703873990892824, 86.97262549661315, 87.29600865899454)};
+        for (BoundingBox box : edges) {
+            List<GeoHash> slices = new java.util.ArrayList<>(GeoHashSearchUtil.leastBoundingSlice(box, 36));
+            java.util.Collections.sort(slices);
+            List<GeoHash> walked = new java.util.ArrayList<>();
+            box.navigate(slices.get(0).significantBits).forEachRemaining(walked::add);
+            assertEquals(slices, walked);
+        }
+    }
+
+    @Test
+    public void testLeastBoundingSliceParallel() {
+        java.util.concurrent.ForkJoinPool pool = new java.util.concurrent.ForkJoinPool(4);
+        try {
+            for (int i = 0; i < 10; i++) {
+                BoundingBox box = prepareBoundingBox();
+                //fine enough for thousands to tens of thousands of grids, split into parts of 4096
+                int precision = 30 + (int) (Math.random() * 5);
+                List<GeoHash> slices = GeoHashSearchUtil.sliceParallel(box, precision, pool);
+                BoundingBoxNavIterator it = box.navigate(precision);
+                for (GeoHash slice : slices) {
+                    assertEquals(it.next(), slice);
+                }
+                assertFalse(it.hasNext());
+            }
+            BoundingBox box = new BoundingBox(30, 32, 110, 113);
+            List<GeoHash> fine = GeoHashSearchUtil.sliceParallel(box, 30, pool);
+            assertTrue(fine.size() > 1 << 14);
+            BoundingBoxNavIterator it = box.navigate(30);
+            for (GeoHash slice : fine) {
+                assertEquals(it.next(), slice);
+            }
+            assertFalse(it.hasNext());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void testCoverCache() {
+        CoverCache cache = new CoverCache(4, 1000);
+        for (int i = 0; i < 20; i++) {
+            BoundingBox box = prepareBoundingBox();
+            List<GeoHash> merged = GeoHashSearchUtil.leastBoundingSliceMerged(box, 36);
+            assertEquals(merged, cache.leastBoundingSliceMerged(box, 36));
+            assertEquals(merged, cache.leastBoundingSliceMerged(new BoundingBox(box), 36));
+            assertTrue(cache.size() <= 4);
+            assertTrue(cache.weight() <= 1000);
+        }
+        //boxes around the same center often share their corner grids
+        assertEquals(40, cache.getMissCount() + cache.getHitCount());
+        assertTrue(cache.getHitCount() >= 20);
+        //an ulp below a grid edge, center - half size of these boxes is in the grid below minLat
+        BoundingBox[] edges = {
+                new BoundingBox(-71.91650390625001, -71.905517578125, -80.18488321214664, -80.15298696024912),
+                new BoundingBox(-61.17187500000001, -60.8203125, -142.02750217690763, -141.89017268382497),
+                new BoundingBox(-19.68750000000001, -18.703873990892824, 86.97262549661315, 87.29600865899454)};
+        for (BoundingBox box : edges) {
+            assertEquals(GeoHashSearchUtil.leastBoundingSliceMerged(box, 36), cache.leastBoundingSliceMerged(box, 36));
+        }
+
+        //a box moved inside the grids of its corners is the same query
+        BoundingBox box = new BoundingBox(30.1, 30.4, 110.1, 110.6);
+        CoverCache.Cover cover = cache.get(box, 36);
+        int k = cover.getPrecision(0);
+        for (int i = 1; i < cover.size(); i++) {
+            k = Math.max(k, cover.getPrecision(i));
+        }
+        double nudge = GeoHash.withBitPrecision(30.1, 110.1, k).getLatDelta() / 1000;
+        assertSame(cover, cache.get(new BoundingBox(box.minLat + nudge, box.maxLat - nudge, box.minLon, box.maxLon), 36));
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.weight());
+    }
+
+    @Test
+    public void testClassifyCover() {
+        for (int i = 0; i < 50; i++) {
+            BoundingBox box = prepareBoundingBox();
+            List<GeoHash> merged = GeoHashSearchUtil.leastBoundingSliceMerged(box, 36);
+            Pairs<List<GeoHash>, List<GeoHash>> tagged = GeoHashSearchUtil.classify(merged, box);
+            assertEquals(merged.size(), tagged.fst.size() + tagged.snd.size());
+            for (GeoHash cell : tagged.fst) {
+                assertTrue(box.contains(cell.getBoundingBox()));
+            }
+            for (GeoHash cell : tagged.snd) {
+                assertFalse(box.contains(cell.getBoundingBox()));
+            }
+        }
+        GeoPolygon triangle = new GeoPolygon(WGS84Point.Create(30, 110), WGS84Point.Create(30.4, 110.2), WGS84Point.Create(30, 110.4));
+        Pairs<List<GeoHash>, List<GeoHash>> tagged = GeoHashSearchUtil.coverClassified(triangle, 64, 40);
+        List<GeoHash> all = new java.util.ArrayList<>(tagged.fst);
+        all.addAll(tagged.snd);
+        java.util.Collections.sort(all);
+        assertEquals(GeoHashSearchUtil.cover(triangle, 64, 40), all);
+        assertFalse(tagged.fst.isEmpty());
+        for (GeoHash cell : tagged.fst) {
+            assertTrue(triangle.contains(cell.getBoundingBox()));
+        }
+    }
+
+    @Test
+    public void testQueryPlanner() {
+        GeoPolygon triangle = new GeoPolygon(WGS84Point.Create(30, 110), WGS84Point.Create(30.4, 110.2), WGS84Point.Create(30, 110.4));
+        DensityEstimate sparse = DensityEstimate.uniform(10);
+        DensityEstimate dense = DensityEstimate.uniform(1e7);
+        QueryPlanner planner = new QueryPlanner();
+        QueryPlan sparsePlan = planner.plan(triangle, sparse);
+        QueryPlan densePlan = planner.plan(triangle, dense);
+        //few points are cheaper to filter than to seek, many points are cheaper to seek than to scan
+        assertTrue(sparsePlan.getRangeCount() < densePlan.getRangeCount());
+        assertTrue(sparsePlan.toString(), sparsePlan.expectedScannedPoints > 0);
+        assertTrue(densePlan.cost <= planner.evaluate(triangle, dense, 1, 62).cost);
+        assertTrue(densePlan.cost <= planner.evaluate(triangle, dense, densePlan.maxCells, 62).cost);
+        //the planner stops at the first budget costing more, no larger budget is cheaper
+        int slicePrecision = GeoHashSearchUtil.leastBoundingSlice(triangle.getBoundingBox(), 62).get(0).significantBits;
+        for (int cells = 1; cells <= QueryPlanner.DEFAULT_MAX_CELLS; cells <<= 1) {
+            int levels = 32 - Integer.numberOfLeadingZeros(cells);
+            int maxPrecision = Math.min(62, slicePrecision + 2 * levels);
+            assertTrue(sparsePlan.cost <= planner.evaluate(triangle, sparse, cells, maxPrecision).cost);
+            assertTrue(densePlan.cost <= planner.evaluate(triangle, dense, cells, maxPrecision).cost);
+        }
+
+        long[] ranges = densePlan.ranges;
+        for (int i = 0; i < ranges.length; i += 2) {
+            assertTrue(ranges[i] < ranges[i + 1]);
+            if (i > 0)
+                assertTrue(ranges[i - 1] < ranges[i]);
+        }
+
+        long[] counts = new long[1 << 12];
+        counts[(int) GeoHash.withBitPrecision(30.1, 110.2, 12).ord()] = 1000;
+        DensityEstimate histogram = DensityEstimate.fromCounts(counts, 12);
+        assertEquals(1000, histogram.estimate(triangle.getBoundingBox().expandToInclude(
+                GeoHash.withBitPrecision(30.1, 110.2, 12).getBoundingBox())), 1e-6);
+        assertEquals(0, histogram.estimate(new BoundingBox(-10, -9, 10, 11)), 0);
+
+        //the grids of a random histogram prorated one by one
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int precision = 0; precision <= 11; precision++) {
+            long[] random = new long[1 << precision];
+            for (int i = 0; i < random.length; i++) {
+                random[i] = r.nextInt(100);
+            }
+            DensityEstimate estimate = DensityEstimate.fromCounts(random, precision);
+            for (int i = 0; i < 20; i++) {
+                double lat = r.nextDouble() * 170 - 85;
+                double lon = r.nextDouble() * 350 - 175;
+                BoundingBox box = new BoundingBox(lat, Math.min(90, lat + r.nextDouble() * 40),
+                        lon, Math.min(180, lon + r.nextDouble() * 80));
+                double expected = 0;
+                for (int ord = 0; ord < random.length; ord++) {
+                    BoundingBox grid = GeoHash.fromOrd(ord, (byte) precision).getBoundingBox();
+                    double latIn = Math.min(grid.maxLat, box.maxLat) - Math.max(grid.minLat, box.minLat);
+                    double lonIn = Math.min(grid.maxLon, box.maxLon) - Math.max(grid.minLon, box.minLon);
+                    if (latIn >= 0 && lonIn >= 0)
+                        expected += random[ord] * latIn * lonIn / (grid.getLatitudeSize() * grid.getLongitudeSize());
+                }
+                assertEquals(expected, estimate.estimate(box), 1e-6 * Math.max(1, expected));
+            }
+        }
+    }
+
+    /**
+     * random points for the index tests: every other one in a dense cluster of 0.1 degree at (30,110), the others all
+     * over the world; the payload of a point is its position in the arrays
+     */
+    private static GeoHashPointIndex randomPointIndex(java.util.Random r, int n) {
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        int[] payloads = new int[n];
+        for (int i = 0; i < n; i++) {
+            boolean cluster = i % 2 == 0;
+            lats[i] = cluster ? 30 + r.nextDouble() * 0.1 : r.nextDouble() * 170 - 85;
+            lons[i] = cluster ? 110 + r.nextDouble() * 0.1 : r.nextDouble() * 360 - 180;
+            payloads[i] = i;
+        }
+        return new GeoHashPointIndex(lats, lons, payloads);
+    }
+
+    /**
+     * a query box of the i-th query, in the cluster of {@link #randomPointIndex} for even i, anywhere for odd i
+     */
+    private static BoundingBox randomQueryBox(java.util.Random r, int i) {
+        if (i % 2 == 0) {
+            double lat = 30 + r.nextDouble() * 0.1;
+            double lon = 110 + r.nextDouble() * 0.1;
+            return new BoundingBox(lat, lat + r.nextDouble() * 0.05, lon, lon + r.nextDouble() * 0.05);
+        }
+        double lat = r.nextDouble() * 160 - 85;
+        double lon = r.nextDouble() * 340 - 180;
+        return new BoundingBox(lat, lat + r.nextDouble() * 10, lon, lon + r.nextDouble() * 20);
+    }
+
+    /**
+     * the payloads of the points in the box by a full scan
+     */
+    private static java.util.Set<Integer> payloadsInBox(GeoHashPointIndex index, BoundingBox box) {
+        java.util.Set<Integer> payloads = new java.util.HashSet<>();
+        for (int i = 0; i < index.size(); i++) {
+            if (box.contains(index.getLatitude(i), index.getLongitude(i)))
+                payloads.add(index.getPayload(i));
+        }
+        return payloads;
+    }
+
+    /**
+     * the distance to every point by a full scan, indexed by payload
+     */
+    private static double[] distancesByPayload(GeoHashPointIndex index, WGS84Point center) {
+        double[] distances = new double[index.size()];
+        for (int i = 0; i < index.size(); i++) {
+            distances[index.getPayload(i)] = VincentyGeodesy.distanceInMeters(center,
+                    WGS84Point.Create(index.getLatitude(i), index.getLongitude(i)));
+        }
+        return distances;
+    }
+
+    @Test
+    public void testGeoHashPointIndex() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        int n = 20000;
+        GeoHashPointIndex index = randomPointIndex(r, n);
+        assertEquals(n, index.size());
+        for (int i = 1; i < n; i++) {
+            assertTrue(Long.compareUnsigned(index.getBits(i - 1), index.getBits(i)) <= 0);
+        }
+        for (int i = 0; i < 20; i++) {
+            BoundingBox box = randomQueryBox(r, i);
+            java.util.Set<Integer> found = new java.util.HashSet<>();
+            for (int payload : index.queryBox(box)) {
+                assertTrue(found.add(payload));
+            }
+            assertEquals(payloadsInBox(index, box), found);
+
+            WGS84Point center = box.getCenterPoint();
+            double meters = r.nextDouble() * box.getLatitudeSize() * 111000;
+            double[] distances = distancesByPayload(index, center);
+            java.util.Set<Integer> expected = new java.util.HashSet<>();
+            for (int j = 0; j < n; j++) {
+                if (distances[j] <= meters)
+                    expected.add(j);
+            }
+            found.clear();
+            for (int payload : index.queryRadius(center, meters)) {
+                assertTrue(found.add(payload));
+            }
+            assertEquals(expected, found);
+        }
+    }
+
+    @Test
+    public void testGeoHashIndexFile() throws java.io.IOException {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        int n = 20000;
+        GeoHashPointIndex index = randomPointIndex(r, n);
+        java.nio.file.Path path = java.nio.file.Files.createTempFile("geohash", ".idx");
+        try {
+            GeoHashIndexFile.write(path, index);
+            try (GeoHashIndexFile file = GeoHashIndexFile.open(path)) {
+                assertEquals(n, file.size());
+                assertEquals(4, file.getRecordSize());
+                for (int i = 0; i < n; i += 97) {
+                    assertEquals(index.getBits(i), file.getKey(i));
+                    assertEquals(index.getPayload(i), file.getRecordInt(i, 0));
+                    assertEquals(index.getPayload(i), file.getRecord(i).getInt());
+                    int first = file.lowerBound(file.getKey(i));
+                    assertTrue(first <= i);
+                    assertEquals(file.getKey(i), file.getKey(first));
+                    assertEquals(index.getLatitude(i), file.getLatitude(i), 1e-7);
+                    assertEquals(index.getLongitude(i), file.getLongitude(i), 1e-7);
+                }
+                for (int i = 0; i < 20; i++) {
+                    BoundingBox box = randomQueryBox(r, i);
+                    java.util.Set<Integer> found = new java.util.HashSet<>();
+                    file.forEachInBox(box, position -> found.add(file.getRecordInt(position, 0)));
+                    assertEquals(payloadsInBox(index, box), found);
+                }
+            }
+        } finally {
+            java.nio.file.Files.delete(path);
+        }
+    }
+
+    @Test
+    public void testMovingObjectIndex() throws InterruptedException {
+        MovingObjectIndex index = new MovingObjectIndex(16);
+        int n = 2000;
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        for (int id = 0; id < n; id++) {
+            lats[id] = 30 + r.nextDouble();
+            lons[id] = 110 + r.nextDouble();
+            index.update(id, lats[id], lons[id]);
+        }
+        assertEquals(n, index.size());
+        //writers move objects of their own while readers query
+        Thread[] writers = new Thread[4];
+        for (int t = 0; t < writers.length; t++) {
+            final int first = t;
+            writers[t] = new Thread(() -> {
+                java.util.Random wr = new java.util.Random(first);
+                for (int round = 0; round < 20000; round++) {
+                    int id = first + writers.length * wr.nextInt(n / writers.length);
+                    lats[id] = 30 + wr.nextDouble();
+                    lons[id] = 110 + wr.nextDouble();
+                    index.update(id, lats[id], lons[id]);
+                }
+            });
+            writers[t].start();
+        }
+        BoundingBox all = new BoundingBox(29, 32, 109, 112);
+        while (writers[0].isAlive()) {
+            assertTrue(index.queryBox(all).length > 0);
+            //no object is removed, a lock free read always finds it
+            assertNotNull(index.getPosition(r.nextInt(n)));
+        }
+        for (Thread writer : writers) {
+            writer.join();
+        }
+        assertEquals(n, index.size());
+        assertEquals(n, new java.util.HashSet<>(java.util.Arrays.asList(
+                java.util.Arrays.stream(index.queryBox(all)).boxed().toArray(Long[]::new))).size());
+        BoundingBox box = new BoundingBox(30.2, 30.6, 110.1, 110.7);
+        java.util.Set<Long> expected = new java.util.HashSet<>();
+        for (int id = 0; id < n; id++) {
+            WGS84Point p = index.getPosition(id);
+            assertEquals(lats[id], p.latitude, 1e-7);
+            assertEquals(lons[id], p.longitude, 1e-7);
+            if (box.contains(p))
+                expected.add((long) id);
+        }
+        java.util.Set<Long> found = new java.util.HashSet<>();
+        for (long id : index.queryBox(box)) {
+            found.add(id);
+        }
+        assertEquals(expected, found);
+        assertTrue(index.remove(7));
+        assertFalse(index.remove(7));
+        assertNull(index.getPosition(7));
+        assertEquals(n - 1, index.queryBox(all).length);
+        index.update(7, 31, 111);
+        assertEquals(n, index.size());
+        assertEquals(31, index.getPosition(7).latitude, 1e-7);
+        assertNull(index.getPosition(-1));
+    }
+
+    @Test
+    public void testNearest() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        GeoHashPointIndex index = randomPointIndex(r, 20000);
+        for (int i = 0; i < 30; i++) {
+            WGS84Point center = randomQueryBox(r, i).getCenterPoint();
+            int k = 1 + r.nextInt(20);
+            double[] distances = distancesByPayload(index, center);
+            double[] sorted = distances.clone();
+            java.util.Arrays.sort(sorted);
+            int[] nearest = index.nearest(center, k);
+            assertEquals(k, nearest.length);
+            for (int j = 0; j < k; j++) {
+                assertEquals(sorted[j], distances[nearest[j]], 1e-6);
+            }
+        }
+        assertEquals(0, index.nearest(WGS84Point.Create(0, 0), 0).length);
+        assertEquals(3, new GeoHashPointIndex(new double[]{1, 2, 3}, new double[]{4, 5, 6}, new int[3])
+                .nearest(WGS84Point.Create(-60, 170), 10).length);
+    }
+
+    @Test
+    public void testGeoHashTrie() {
+        java.util.Random r = new java.util.Random(System.nanoTime());
+        int n = 20000;
+        GeoHashPointIndex index = randomPointIndex(r, n);
+        long[] keys = new long[n];
+        double[] values = new double[n];
+        for (int i = 0; i < n; i++) {
+            keys[i] = index.getBits(i);
+            values[i] = i % 7;
+        }
+        int maxDepth = 50;
+        GeoHashTrie trie = new GeoHashTrie(keys, values, maxDepth);
+        assertTrue(trie.size() < 2 * n);
+        assertEquals(n, trie.count(0, 0));
+        for (int i = 0; i < 500; i++) {
+            int sig = r.nextInt(maxDepth + 1);
+            //half of the grids hold a key
+            long bits = i % 2 == 0 ? keys[r.nextInt(n)] : r.nextLong();
+            long mask = sig == 0 ? 0 : -1L << (64 - sig);
+            int expected = 0;
+            double expectedSum = 0;
+            for (int j = 0; j < n; j++) {
+                if (((keys[j] ^ bits) & mask) == 0) {
+                    ++expected;
+                    expectedSum += values[j];
+                }
+            }
+            assertEquals(expected, trie.count(bits, sig));
+            assertEquals(expectedSum, trie.sum(bits, sig), 1e-6);
+        }
+        for (int i = 0; i < 20; i++) {
+            BoundingBox box = randomQueryBox(r, i);
+            List<GeoHash> cells = GeoHashSearchUtil.leastBoundingSliceMerged(box, 40);
+            long expected = 0;
+            long expectedInGrids = 0;
+            for (int j = 0; j < n; j++) {
+                for (GeoHash cell : cells) {
+                    if (cell.significantBits == 0 || (keys[j] ^ cell.bits) >>> (64 - cell.significantBits) == 0) {
+                        ++expected;
+                        break;
+                    }
+                }
+            }
+            assertEquals(expected, trie.count(cells));
+            int precision = GeoHashSearchUtil.leastBoundingSlice(box, 62).get(0).significantBits + 4;
+            long[] ranges = GeoHashSearchUtil.rangesFor(box, precision, Integer.MAX_VALUE);
+            for (int j = 0; j < n; j++) {
+                long ord = keys[j] >>> (64 - precision);
+                for (int k = 0; k < ranges.length; k += 2) {
+                    if (ord >= ranges[k] && ord < ranges[k + 1]) {
+                        ++expectedInGrids;
+                        break;
+                    }
+                }
+            }
+            assertEquals(expectedInGrids, trie.count(box, precision));
+        }
+        assertEquals(0, new GeoHashTrie(new long[0], null, 64).count(0, 0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void itShouldThrowWhenTrieKeysAreNotSorted() {
+        new GeoHashTrie(new long[]{-1L, 1L}, null, 64);
+    }
+
     private BoundingBox prepareBoundingBox(){
         double lng=112.1213;
         double lat=32.214;
@@ -261,7 +998,7 @@ public class GeoHashTest {
     private void testSliceCoverCorner(BoundingBox box, List<GeoHash> slices, WGS84Point lowerRight) {
         boolean isCovered = false;
         for (GeoHash geoHash : slices) {
-            if (geoHash.boundingBox.contains(lowerRight)) {
+            if (geoHash.getBoundingBox().contains(lowerRight)) {
                 isCovered = true;
                 break;
             }
@@ -367,6 +1104,24 @@ public class GeoHashTest {
         assertEquals("ezs42", base32);
     }
 
+    @Test
+    public void testWriteBase32() {
+        long[] bits = new long[3];
+        bits[0] = GeoHash.fromLongValue(0x6ff0414000000000L, (byte) 25).bits;
+        bits[1] = GeoHash.fromGeohashString("dr4jb").bits;
+        bits[2] = GeoHash.fromGeohashString("u1pbz").bits;
+        byte[] dst = new byte[16];
+        assertEquals(16, GeoHashCodec.writeBase32(bits, 5, dst, 1));
+        assertEquals("ezs42dr4jbu1pbz", new String(dst, 1, 15, java.nio.charset.StandardCharsets.US_ASCII));
+        java.nio.ByteBuffer buffer = java.nio.ByteBuffer.allocate(15);
+        GeoHashCodec.writeBase32(bits, 5, buffer, 0);
+        assertEquals(0, buffer.position());
+        assertEquals("ezs42dr4jbu1pbz", new String(buffer.array(), java.nio.charset.StandardCharsets.US_ASCII));
+        char[] chars = new char[3];
+        GeoHashCodec.writeBase32(bits[1], 3, chars, 0);
+        assertEquals("dr4", new String(chars));
+    }
+
     @Test(expected = IllegalStateException.class)
     public void toBase32ShouldThrowWhenPrecisionIsNotAMultipleOf5() {
         GeoHash hash = GeoHash.fromLongValue(0x6ff0413000000000L, (byte) 24);
@@ -378,19 +1133,37 @@ public class GeoHashTest {
         // for all lat/lon pairs check decoded point is in the same bbox as the
         // geohash formed by encoder
         for (GeoHash gh : RandomGeohashes.fullRange()) {
-            BoundingBox bbox = gh.boundingBox;
+            BoundingBox bbox = gh.getBoundingBox();
             GeoHash decodedHash = GeoHash.fromGeohashString(gh.toBase32());
-            WGS84Point decodedCenter = decodedHash.boundingBox.getCenterPoint();
+            WGS84Point decodedCenter = decodedHash.getBoundingBox().getCenterPoint();
 
             assertTrue("bbox " + bbox + " should contain the decoded center value " + decodedCenter, bbox
                     .contains(decodedCenter));
-            BoundingBox decodedBoundingBox = decodedHash.boundingBox;
+            BoundingBox decodedBoundingBox = decodedHash.getBoundingBox();
             assertEquals(bbox, decodedBoundingBox);
             assertEquals(gh, decodedHash);
             assertEquals(gh.toBase32(), decodedHash.toBase32());
         }
     }
 
+    @Test
+    public void testDecodeFromBytes() {
+        for (GeoHash gh : RandomGeohashes.fullRange()) {
+            String base32 = gh.toBase32();
+            byte[] ascii = ("#" + base32 + "#").getBytes(java.nio.charset.StandardCharsets.US_ASCII);
+            assertEquals(gh, GeoHash.fromGeohashString(new StringBuilder(base32)));
+            assertEquals(gh, GeoHash.fromGeohashString(ascii, 1, base32.length()));
+            java.nio.ByteBuffer buffer = java.nio.ByteBuffer.wrap(ascii, 1, base32.length());
+            assertEquals(gh, GeoHash.fromGeohashString(buffer));
+            assertEquals(1, buffer.position());
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromGeohashStringShouldThrowOnInvalidCharacter() {
+        GeoHash.fromGeohashString("ezsa2");
+    }
+
     @Test
     public void testWithin() {
         GeoHash hash = GeoHash.fromLongValue(0x6ff0414000000000L, (byte) 25);
@@ -431,6 +1204,19 @@ public class GeoHashTest {
         assertEquals("sew1c2vs2q5r", hash3.toBase32());
     }
 
+    @Test
+    public void testBoundingBoxOfEdgeGrids() {
+        for (int numberOfBits = 0; numberOfBits <= 64; numberOfBits++) {
+            GeoHash upperRight = GeoHash.withBitPrecision(90, 180, numberOfBits);
+            assertTrue(upperRight.getBoundingBox().contains(WGS84Point.Create(90, 180)));
+            assertEquals(90, upperRight.getMaxLat(), 0);
+            assertEquals(180, upperRight.getMaxLon(), 0);
+            GeoHash lowerLeft = GeoHash.withBitPrecision(-90, -180, numberOfBits);
+            assertEquals(-90, lowerLeft.getMinLat(), 0);
+            assertEquals(-180, lowerLeft.getMinLon(), 0);
+        }
+    }
+
     @Test
     public void testLatLonBoundingBoxes() {
         GeoHash hash = GeoHash.withBitPrecision(40, 120, 10);
@@ -508,6 +1294,32 @@ public class GeoHashTest {
 
     }
 
+    @Test
+    public void testGeoHashCache() {
+        GeoHashCache cache = new GeoHashCache(20, 1024);
+        GeoHash coarse = cache.withBitPrecision(30, 30, 20);
+        assertSame(coarse, cache.withBitPrecision(30.0001, 30.0001, 20));
+        assertSame(coarse, cache.intern(GeoHash.withBitPrecision(30, 30, 20)));
+        assertEquals(GeoHash.withBitPrecision(30, 30, 20), coarse);
+
+        GeoHash fine = cache.withBitPrecision(30, 30, 40);
+        assertSame(fine, cache.withBitPrecision(30, 30, 40));
+        assertEquals(GeoHash.withBitPrecision(30, 30, 40), fine);
+        assertSame(coarse, cache.dropSignificantBits(fine, 20));
+        assertSame(coarse, cache.fromPrefix(fine, (byte) 44));
+        assertEquals(fine.dropSignificantBits(3), cache.dropSignificantBits(fine, 3));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void itShouldThrowWhenCachedSignificantBitsAreNegative() {
+        new GeoHashCache().fromLongValue(0, (byte) -1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void itShouldThrowWhenCachedSignificantBitsAreMoreThan64() {
+        new GeoHashCache().fromLongValue(0, (byte) 65);
+    }
+
     @Test
     public void testEqualsAndHashCode() {
         GeoHash hash1 = GeoHash.withBitPrecision(30, 30, 24);
@@ -546,7 +1358,7 @@ public class GeoHashTest {
         end = end.getWesternNeighbour();
         end = end.getNorthernNeighbour();
         assertEquals(start, end);
-        assertEquals(start.boundingBox, end.boundingBox);
+        assertEquals(start.getBoundingBox(), end.getBoundingBox());
     }
 
     @Test
@@ -602,14 +1414,62 @@ public class GeoHashTest {
         assertAdjacentHashesAre(center, adjacent);
     }
 
+    @Test
+    public void testCodecAdjacent() {
+        long[] out = new long[GeoHashCodec.ADJACENT_LENGTH];
+        for (int numberOfBits = 2; numberOfBits <= 64; numberOfBits++) {
+            for (int i = 0; i < 200; i++) {
+                GeoHash hash = RandomGeohashes.createWithPrecision(numberOfBits);
+                GeoHashCodec.adjacent(hash.bits, numberOfBits, out);
+                assertEquals(hash.bits, out[0]);
+                assertEquals(hash.getNorthernNeighbour().bits, out[1]);
+                assertEquals(hash.getNorthernEastNeighbour().bits, out[2]);
+                assertEquals(hash.getEasternNeighbour().bits, out[3]);
+                assertEquals(hash.getSouthernEastNeighbour().bits, out[4]);
+                assertEquals(hash.getSouthernNeighbour().bits, out[5]);
+                assertEquals(hash.getSouthernWestNeighbour().bits, out[6]);
+                assertEquals(hash.getWesternNeighbour().bits, out[7]);
+                assertEquals(hash.getNorthernWestNeighbour().bits, out[8]);
+            }
+        }
+        //across the antimeridian
+        GeoHash east = GeoHash.withBitPrecision(10, 179.99, 30);
+        GeoHashCodec.adjacent(east.bits, 30, out);
+        GeoHash wrapped = GeoHash.fromLongValue(out[3], (byte) 30);
+        assertEquals(-180, wrapped.getMinLon(), 0);
+        assertEquals(east.latBits, wrapped.latBits);
+        GeoHash[] adjacent = east.getAdjacent();
+        assertEquals(wrapped, adjacent[2]);
+        assertEquals(wrapped.getBoundingBox(), adjacent[2].getBoundingBox());
+        assertEquals(east, adjacent[6].getEasternNeighbour());
+    }
+
+    @Test
+    public void testRingsMatchNavIterator() {
+        GeoHash center = GeoHash.withBitPrecision(32.214, 112.1213, 35);
+        final int maxRadius = 5;
+        long[] rings = new long[GeoHashNavIterator.ringsSize(maxRadius)];
+        assertEquals(rings.length, GeoHashNavIterator.rings(center.bits, center.significantBits, maxRadius, rings, 0));
+        GeoHashNavIterator iterator = new GeoHashNavIterator(center, maxRadius);
+        int count = 0;
+        while (iterator.hasNext()) {
+            GeoHashNavIterator.GeoHashNavPair pair = iterator.next();
+            assertEquals(pair.grid.bits, rings[count++]);
+        }
+        assertEquals(rings.length, count);
+
+        GeoHash moved = GeoHash.fromLongValue(GeoHashCodec.move(center.bits, 35, -3, 7), (byte) 35);
+        assertEquals(center.navFromSteps(-3, 7), moved);
+    }
+
     @Test
     public void testThatAdjacentHashesHavePointInitialized() {
         String center = "dqcjqc";
         GeoHash geohash = GeoHash.fromGeohashString(center);
         GeoHash[] adjacentHashes = geohash.getAdjacent();
         for (GeoHash adjacentHash : adjacentHashes) {
-            assertNotNull(adjacentHash.boundingBox);
-            assertNotNull(adjacentHash.boundingBox.getCenterPoint());
+            assertNotNull(adjacentHash.getBoundingBox());
+            assertNotNull(adjacentHash.getBoundingBox().getCenterPoint());
         }
     }
 